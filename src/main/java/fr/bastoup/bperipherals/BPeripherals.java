@@ -1,6 +1,7 @@
 package fr.bastoup.bperipherals;
 
 import fr.bastoup.bperipherals.database.DBFactory;
+import fr.bastoup.bperipherals.network.BPeripheralsNetwork;
 import fr.bastoup.bperipherals.registry.ClientRegistry;
 import fr.bastoup.bperipherals.registry.SharedRegistry;
 import fr.bastoup.bperipherals.util.BPeripheralsProperties;
@@ -26,6 +27,7 @@ public class BPeripherals
         MOD_EVENT_BUS.register(Config.class);
 
         Config.setup();
+        BPeripheralsNetwork.init();
 
         dbFactory = DBFactory.getInstance();
 
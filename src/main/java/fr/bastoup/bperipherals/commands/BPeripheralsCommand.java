@@ -0,0 +1,63 @@
+package fr.bastoup.bperipherals.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import fr.bastoup.bperipherals.BPeripherals;
+import fr.bastoup.bperipherals.database.DatabaseBenchmark;
+import fr.bastoup.bperipherals.peripherals.cryprographicaccelerator.CryptoBenchmark;
+import fr.bastoup.bperipherals.util.BPeripheralsProperties;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+@Mod.EventBusSubscriber(
+        modid = BPeripheralsProperties.MODID
+)
+public class BPeripheralsCommand {
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    public static void register(CommandDispatcher<CommandSource> dispatcher) {
+        dispatcher.register(Commands.literal(BPeripheralsProperties.MODID)
+                .then(Commands.literal("bench")
+                        .requires(source -> source.hasPermission(2))
+                        .then(Commands.literal("crypto")
+                                .executes(context -> bench(context.getSource(), "crypto", CryptoBenchmark::run)))
+                        .then(Commands.literal("database")
+                                .executes(context -> bench(context.getSource(), "database", DatabaseBenchmark::run)))));
+    }
+
+    private static int bench(CommandSource source, String name, Callable<List<?>> benchmark) {
+        // The benchmark takes a few seconds, it runs on its own thread and reports back on the server thread
+        try {
+            CryptoBenchmark.BENCHMARK_EXECUTOR.execute(() -> {
+                try {
+                    List<?> results = benchmark.call();
+                    source.getServer().execute(() -> {
+                        for (Object result : results) {
+                            source.sendSuccess(new StringTextComponent(result.toString()), false);
+                        }
+                    });
+                } catch (Exception e) {
+                    BPeripherals.getLogger().error("The " + name + " benchmark failed", e);
+                    source.getServer().execute(() -> source.sendFailure(new StringTextComponent("The benchmark failed, check the logs for more info.")));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            source.sendFailure(new StringTextComponent("A benchmark is already running."));
+            return 0;
+        }
+
+        source.sendSuccess(new StringTextComponent("Running the " + name + " benchmark, this takes a few seconds..."), true);
+        return 1;
+    }
+}
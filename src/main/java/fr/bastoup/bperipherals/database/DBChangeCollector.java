@@ -0,0 +1,111 @@
+package fr.bastoup.bperipherals.database;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the rows modified on a writer connection through SQLite's update hook, grouped by table and operation.
+ * The commit hook runs before the commit is visible to the other connections, so committed changes are only kept
+ * until the database calls {@link #dispatch()} once the write has returned. Rolled back changes are dropped.
+ */
+public class DBChangeCollector implements SQLiteUpdateListener, SQLiteCommitListener {
+
+    public static final int MAX_ROW_IDS = 256;
+
+    private final List<DBChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Change> pending = new LinkedHashMap<>();
+    private final List<Change> committed = new ArrayList<>();
+
+    public void install(Connection con) {
+        if (con instanceof SQLiteConnection) {
+            ((SQLiteConnection) con).addUpdateListener(this);
+            ((SQLiteConnection) con).addCommitListener(this);
+        }
+    }
+
+    public void addListener(DBChangeListener listener) {
+        if (!listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    public void removeListener(DBChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void onUpdate(Type type, String database, String table, long rowId) {
+        if (listeners.isEmpty())
+            return;
+
+        String operation = type.name().toLowerCase(Locale.ROOT);
+        String key = table + '\0' + operation;
+        Change change = pending.get(key);
+        if (change == null) {
+            change = new Change(table, operation);
+            pending.put(key, change);
+        }
+        change.add(rowId);
+    }
+
+    @Override
+    public synchronized void onCommit() {
+        committed.addAll(pending.values());
+        pending.clear();
+    }
+
+    /**
+     * Hands the committed changes to the listeners.
+     */
+    public void dispatch() {
+        Change[] changes;
+        synchronized (this) {
+            if (committed.isEmpty())
+                return;
+            changes = committed.toArray(new Change[0]);
+            committed.clear();
+        }
+
+        for (Change change : changes) {
+            long[] rowIds = Arrays.copyOf(change.rowIds, Math.min(change.count, MAX_ROW_IDS));
+            for (DBChangeListener listener : listeners) {
+                listener.onChange(change.table, change.operation, rowIds, change.count);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onRollback() {
+        pending.clear();
+    }
+
+    private static class Change {
+        private final String table;
+        private final String operation;
+        private long[] rowIds = new long[8];
+        private int count = 0;
+
+        private Change(String table, String operation) {
+            this.table = table;
+            this.operation = operation;
+        }
+
+        private void add(long rowId) {
+            if (count < MAX_ROW_IDS) {
+                if (count == rowIds.length)
+                    rowIds = Arrays.copyOf(rowIds, Math.min(rowIds.length * 2, MAX_ROW_IDS));
+                rowIds[count] = rowId;
+            }
+            count++;
+        }
+    }
+}
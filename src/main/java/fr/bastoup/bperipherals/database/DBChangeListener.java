@@ -0,0 +1,13 @@
+package fr.bastoup.bperipherals.database;
+
+public interface DBChangeListener {
+    /**
+     * Called once per table and operation after a transaction has been committed.
+     *
+     * @param table     The name of the modified table.
+     * @param operation Either "insert", "update" or "delete".
+     * @param rowIds    The affected row ids, at most {@link DBChangeCollector#MAX_ROW_IDS} of them.
+     * @param count     The total number of affected rows.
+     */
+    void onChange(String table, String operation, long[] rowIds, int count);
+}
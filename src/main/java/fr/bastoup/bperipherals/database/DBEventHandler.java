@@ -0,0 +1,42 @@
+package fr.bastoup.bperipherals.database;
+
+import fr.bastoup.bperipherals.BPeripherals;
+import fr.bastoup.bperipherals.util.BPeripheralsProperties;
+import fr.bastoup.bperipherals.util.Config;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+
+@Mod.EventBusSubscriber(
+        modid = BPeripheralsProperties.MODID
+)
+public class DBEventHandler {
+
+    private static int ticks = 0;
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || Config.MEMORY_DATABASE_SNAPSHOT_INTERVAL <= 0)
+            return;
+
+        if (++ticks >= Config.MEMORY_DATABASE_SNAPSHOT_INTERVAL) {
+            ticks = 0;
+            BPeripherals.getDBFactory().snapshotMemoryDatabases();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldSave(WorldEvent.Save event) {
+        if (event.getWorld().isClientSide() || !Config.MEMORY_DATABASE_SNAPSHOT_ON_SAVE)
+            return;
+
+        BPeripherals.getDBFactory().snapshotMemoryDatabases();
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        BPeripherals.getDBFactory().closeAll();
+    }
+}
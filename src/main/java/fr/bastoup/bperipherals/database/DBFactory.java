@@ -1,5 +1,6 @@
 package fr.bastoup.bperipherals.database;
 
+import fr.bastoup.bperipherals.BPeripherals;
 import fr.bastoup.bperipherals.beans.ErrorResult;
 import fr.bastoup.bperipherals.beans.QueryResult;
 import fr.bastoup.bperipherals.beans.SQLResult;
@@ -8,10 +9,28 @@ import fr.bastoup.bperipherals.peripherals.database.PeripheralDatabase;
 import fr.bastoup.bperipherals.util.Config;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DBFactory {
     private static final String URL_PREFIX = "jdbc:sqlite:";
-    private static final String URL_SUFFIX = "?limit_attached=0&page_size=1024&max_page_count=%d";
+    private static final String URL_SUFFIX = "?limit_attached=0&page_size=1024&max_page_count=%d&busy_timeout=%d";
+    private static final String READ_ONLY_SUFFIX = "&open_mode=1";
+    private static final String MEMORY_PATH = ":memory:";
+
+    // Snapshots and closes write whole databases to disk, they run here rather than on the server thread
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BPeripherals-Database");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Database> databases = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> closing = new ConcurrentHashMap<>();
 
     static {
         try {
@@ -27,16 +46,146 @@ public class DBFactory {
     }
 
     public Connection getConnection(String path) throws SQLException {
-        return DriverManager.getConnection(URL_PREFIX + path + String.format(URL_SUFFIX, Config.MAX_DATABASE_SIZE), null, null);
+        return DriverManager.getConnection(URL_PREFIX + path + String.format(URL_SUFFIX, Config.MAX_DATABASE_SIZE, Config.DATABASE_BUSY_TIMEOUT), null, null);
+    }
+
+    public Connection getReadConnection(String path) throws SQLException {
+        return DriverManager.getConnection(URL_PREFIX + path + String.format(URL_SUFFIX, Config.MAX_DATABASE_SIZE, Config.DATABASE_BUSY_TIMEOUT) + READ_ONLY_SUFFIX, null, null);
+    }
+
+    public Database getDatabase(String path) throws SQLException {
+        Database db = databases.get(path);
+        if (db != null)
+            return db;
+
+        while (true) {
+            // A memory database must have written its last snapshot before the file is read again. This waits
+            // outside of the lock, which the server thread takes to close databases.
+            try {
+                awaitClose(closing.get(path));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the database.");
+            }
+
+            synchronized (databases) {
+                db = databases.get(path);
+                if (db != null)
+                    return db;
+
+                Future<?> pending = closing.get(path);
+                if (pending != null && !pending.isDone())
+                    continue;
+                closing.remove(path);
+
+                if (Config.MEMORY_DATABASES) {
+                    db = new MemoryDatabase(path, getConnection(MEMORY_PATH));
+                } else {
+                    db = new FileDatabase(this, path, Config.DATABASE_READ_CONNECTIONS, Config.DATABASE_BUSY_TIMEOUT);
+                }
+                databases.put(path, db);
+                return db;
+            }
+        }
+    }
+
+    public boolean isMemoryPersistent() {
+        return Config.MEMORY_DATABASE_SNAPSHOT_INTERVAL > 0 || Config.MEMORY_DATABASE_SNAPSHOT_ON_SAVE;
+    }
+
+    /**
+     * Closes a database in the background, this is called from the server thread.
+     */
+    public void closeDatabase(String path) {
+        synchronized (databases) {
+            Database db = databases.remove(path);
+            if (db != null)
+                closing.put(path, BACKGROUND.submit(() -> close(db)));
+        }
+    }
+
+    /**
+     * Closes every database before the server stops, waiting for the ones already closing.
+     */
+    public void closeAll() {
+        synchronized (databases) {
+            for (Database db : databases.values()) {
+                close(db);
+            }
+            databases.clear();
+        }
+        try {
+            for (Future<?> future : closing.values()) {
+                awaitClose(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closing.clear();
+    }
+
+    private void close(Database db) {
+        try {
+            db.close(isMemoryPersistent());
+        } catch (SQLException e) {
+            BPeripherals.getLogger().error("Unable to close the database " + db.getPath(), e);
+        }
+    }
+
+    private static void awaitClose(Future<?> future) throws InterruptedException {
+        if (future == null)
+            return;
+
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            BPeripherals.getLogger().error("Unable to close a database", e.getCause());
+        }
+    }
+
+    public void snapshotMemoryDatabases() {
+        for (Database db : databases.values()) {
+            BACKGROUND.execute(() -> {
+                try {
+                    db.snapshot();
+                } catch (SQLException e) {
+                    BPeripherals.getLogger().error("Unable to save the memory database " + db.getPath(), e);
+                }
+            });
+        }
     }
 
     public SQLResult executeSQL(String path, String sql) {
+        try {
+            Database db = getDatabase(path);
+            if (DBUtil.isReadOnly(sql)) {
+                return db.read(con -> executeSQL(con, sql));
+            } else {
+                return db.write(sql, con -> executeSQL(con, sql));
+            }
+        } catch (SQLException e) {
+            return new ErrorResult(e.getMessage());
+        }
+    }
+
+    public SQLResult executePrepared(String path, PeripheralDatabase.CCPreparedStatement statement) {
+        try {
+            Database db = getDatabase(path);
+            if (DBUtil.isReadOnly(statement.getSQL())) {
+                return db.read(con -> executePrepared(con, statement));
+            } else {
+                return db.write(statement.getSQL(), con -> executePrepared(con, statement));
+            }
+        } catch (SQLException e) {
+            return new ErrorResult(e.getMessage());
+        }
+    }
+
+    private SQLResult executeSQL(Connection con, String sql) {
         SQLResult res;
-        Connection con = null;
         Statement statement = null;
         ResultSet resultSet = null;
         try {
-            con = getConnection(path);
             statement = con.createStatement();
             boolean stmtExec = statement.execute(sql);
             if (stmtExec) {
@@ -45,23 +194,19 @@ public class DBFactory {
             } else {
                 res = new UpdateResult(statement.getUpdateCount());
             }
-            statement.close();
-            con.close();
         } catch (SQLException e) {
             res = new ErrorResult(e.getMessage());
         } finally {
-            DBUtil.closeAll(statement, con, resultSet);
+            DBUtil.closeAll(statement, null, resultSet);
         }
         return res;
     }
 
-    public SQLResult executePrepared(String path, PeripheralDatabase.CCPreparedStatement statement) {
+    private SQLResult executePrepared(Connection con, PeripheralDatabase.CCPreparedStatement statement) {
         SQLResult res;
-        Connection con = null;
         PreparedStatement prepStatement = null;
         ResultSet resultSet = null;
         try {
-            con = getConnection(path);
             prepStatement = con.prepareStatement(statement.getSQL());
             for (int key : statement.getParameters().keySet()) {
                 prepStatement.setObject(key, statement.getParameters().get(key));
@@ -76,7 +221,7 @@ public class DBFactory {
         } catch (SQLException e) {
             res = new ErrorResult(e.getMessage());
         } finally {
-            DBUtil.closeAll(prepStatement, con, resultSet);
+            DBUtil.closeAll(prepStatement, null, resultSet);
         }
         return res;
     }
@@ -0,0 +1,9 @@
+package fr.bastoup.bperipherals.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface DBTask<T> {
+    T run(Connection con) throws SQLException;
+}
@@ -8,37 +8,85 @@ import fr.bastoup.bperipherals.beans.UpdateResult;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 public class DBUtil {
 
+    private static final Pattern READ_ONLY_SQL = Pattern.compile("^\\s*(SELECT|VALUES)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRANSACTION_SQL = Pattern.compile("\\b(BEGIN|SAVEPOINT)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Whether a statement can be routed to a read-only connection. This is deliberately conservative: anything that
+     * is not a plain SELECT or VALUES goes through the writer.
+     */
+    public static boolean isReadOnly(String sql) {
+        return READ_ONLY_SQL.matcher(sql).find();
+    }
+
+    /**
+     * Decodes a result set into Lua friendly rows. The metadata is read once, then every cell is converted from the
+     * value the driver read for its storage class: numbers as {@link Double}, text as {@link String} and blobs as byte
+     * arrays. SQLite types each value separately, so the declared type of a column can't be trusted for every row.
+     */
     public static List<Map<String, Object>> mapResults(ResultSet resultSet) throws SQLException {
-        int n = resultSet.getMetaData().getColumnCount();
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int n = metaData.getColumnCount();
 
         String[] keys = new String[n];
         for (int i = 0; i < n; i++) {
-            keys[i] = resultSet.getMetaData().getColumnName(i + 1);
+            keys[i] = metaData.getColumnName(i + 1);
         }
 
-        List<Object[]> tableList = new ArrayList<>();
+        int capacity = (int) (n / 0.75f) + 1;
+        List<Map<String, Object>> res = new ArrayList<>();
         while (resultSet.next()) {
-            Object[] rows = new Object[n];
+            Map<String, Object> row = new HashMap<>(capacity);
             for (int i = 0; i < n; i++) {
-                rows[i] = resultSet.getObject(i + 1);
+                Object value = resultSet.getObject(i + 1);
+                // Integers come back as Integer or Long
+                if (value instanceof Number && !(value instanceof Double))
+                    value = ((Number) value).doubleValue();
+                row.put(keys[i], value);
             }
-            tableList.add(rows);
+            res.add(row);
         }
+        return res;
+    }
 
-        List<Map<String, Object>> res = new ArrayList<>();
-        for (Object[] r : tableList) {
-            res.add(map(keys, r));
+    /**
+     * Whether a statement may leave a transaction open. Only BEGIN and SAVEPOINT start one outside of a transaction,
+     * so other statements never need {@link #rollbackOpenTransaction(Connection)}. Matching the keywords anywhere is
+     * conservative: a trigger body only costs a useless check.
+     */
+    public static boolean mayOpenTransaction(String sql) {
+        return TRANSACTION_SQL.matcher(sql).find();
+    }
+
+    /**
+     * Rolls back the transaction a request left open on a shared writer connection, so that it can't swallow the
+     * writes of the next requests.
+     *
+     * @return whether a transaction was open.
+     */
+    public static boolean rollbackOpenTransaction(Connection con) {
+        Statement statement = null;
+        try {
+            statement = con.createStatement();
+            statement.execute("ROLLBACK");
+            return true;
+        } catch (SQLException e) {
+            // SQLite refuses to roll back when no transaction is active
+            return false;
+        } finally {
+            closeAll(statement, null, null);
         }
-        return res;
     }
 
     public static Map<String, Object> map(String[] keys, Object[] values) {
@@ -0,0 +1,43 @@
+package fr.bastoup.bperipherals.database;
+
+import java.sql.SQLException;
+
+/**
+ * The connections held open for a Database Disk while it is inserted.
+ * Reads and writes are routed separately so that implementations can run reads in parallel and serialize writes.
+ */
+public abstract class Database {
+
+    protected final String path;
+    protected final DBChangeCollector changes = new DBChangeCollector();
+
+    protected static final String OPEN_TRANSACTION_ERROR = "Transactions must be committed or rolled back by the request that started them, it has been rolled back.";
+
+    protected Database(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void addChangeListener(DBChangeListener listener) {
+        changes.addListener(listener);
+    }
+
+    public void removeChangeListener(DBChangeListener listener) {
+        changes.removeListener(listener);
+    }
+
+    public abstract <T> T read(DBTask<T> task) throws SQLException;
+
+    /**
+     * @param sql The statement the task runs, a transaction it leaves open is rolled back.
+     */
+    public abstract <T> T write(String sql, DBTask<T> task) throws SQLException;
+
+    public void snapshot() throws SQLException {
+    }
+
+    public abstract void close(boolean snapshot) throws SQLException;
+}
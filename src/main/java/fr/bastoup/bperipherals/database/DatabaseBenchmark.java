@@ -0,0 +1,115 @@
+package fr.bastoup.bperipherals.database;
+
+import fr.bastoup.bperipherals.BPeripherals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast query results are decoded into Lua rows, on a scratch in-memory database. Runs through the
+ * same one-at-a-time executor as the crypto benchmark.
+ */
+public class DatabaseBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final long CASE_TIME = TimeUnit.MILLISECONDS.toNanos(500);
+
+    public static final class Result {
+        private final String name;
+        private final double rowsPerSecond;
+
+        private Result(String name, long rows, long nanos) {
+            this.name = name;
+            this.rowsPerSecond = rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.0f rows/s", name, rowsPerSecond);
+        }
+    }
+
+    public static List<Result> run() throws SQLException {
+        Map<String, String> cases = new LinkedHashMap<>();
+        cases.put("typed columns", "SELECT id, amount, name, data FROM bench");
+        cases.put("expressions", "SELECT id * 2, amount / 3, upper(name), length(data) FROM bench");
+        cases.put("mixed storage", "SELECT mixed FROM bench");
+
+        List<Result> results = new ArrayList<>();
+        Connection connection = BPeripherals.getDBFactory().getConnection(":memory:");
+        try {
+            fill(connection);
+            for (Map.Entry<String, String> entry : cases.entrySet()) {
+                results.add(measure(connection, entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            DBUtil.closeAll(null, connection, null);
+        }
+        return results;
+    }
+
+    private static void fill(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate("CREATE TABLE bench (id INTEGER, amount REAL, name TEXT, data BLOB, mixed)");
+        } finally {
+            DBUtil.closeAll(statement, null, null);
+        }
+
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO bench VALUES (?, ?, ?, ?, ?)");
+        try {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < ROWS; i++) {
+                insert.setInt(1, i);
+                insert.setDouble(2, i / 7.0);
+                insert.setString(3, "row " + i);
+                insert.setBytes(4, new byte[32]);
+                switch (i % 3) {
+                    case 0:
+                        insert.setInt(5, i);
+                        break;
+                    case 1:
+                        insert.setString(5, "row " + i);
+                        break;
+                    default:
+                        insert.setNull(5, java.sql.Types.NULL);
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+            DBUtil.closeAll(insert, null, null);
+        }
+    }
+
+    private static Result measure(Connection connection, String name, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            long rows = 0;
+            long start = System.nanoTime();
+            long now = start;
+            while (now - start < CASE_TIME) {
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    rows += DBUtil.mapResults(resultSet).size();
+                } finally {
+                    DBUtil.closeAll(null, null, resultSet);
+                }
+                now = System.nanoTime();
+            }
+            return new Result(name, rows, now - start);
+        } finally {
+            DBUtil.closeAll(statement, null, null);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fr.bastoup.bperipherals.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A database stored in the world folder, with a single writer connection and a small pool of read-only connections.
+ * The database is switched to WAL journaling so that readers never block the writer and the other way around.
+ * Writes are queued in arrival order on a fair lock instead of racing each other for SQLite's file lock, and a
+ * transaction left open by a request is rolled back so it doesn't capture the writes of other computers.
+ */
+public class FileDatabase extends Database {
+
+    private final DBFactory factory;
+    private final Connection writer;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final Queue<Connection> idleReaders = new ConcurrentLinkedQueue<>();
+    private final Semaphore readers;
+    private final int busyTimeout;
+    private volatile boolean closed = false;
+
+    FileDatabase(DBFactory factory, String path, int readConnections, int busyTimeout) throws SQLException {
+        super(path);
+        this.factory = factory;
+        this.readers = new Semaphore(readConnections, true);
+        this.busyTimeout = busyTimeout;
+        this.writer = factory.getConnection(path);
+
+        Statement statement = null;
+        try {
+            statement = writer.createStatement();
+            statement.execute("PRAGMA journal_mode=WAL;");
+            changes.install(writer);
+        } catch (SQLException e) {
+            DBUtil.closeAll(statement, writer, null);
+            throw e;
+        } finally {
+            DBUtil.closeAll(statement, null, null);
+        }
+    }
+
+    @Override
+    public <T> T read(DBTask<T> task) throws SQLException {
+        acquire(readers);
+        Connection con = null;
+        try {
+            checkOpen();
+            con = idleReaders.poll();
+            if (con == null)
+                con = factory.getReadConnection(path);
+            return task.run(con);
+        } finally {
+            if (con != null) {
+                if (closed)
+                    DBUtil.closeAll(null, con, null);
+                else
+                    idleReaders.offer(con);
+            }
+            readers.release();
+        }
+    }
+
+    @Override
+    public <T> T write(String sql, DBTask<T> task) throws SQLException {
+        try {
+            writeLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database.");
+        }
+
+        try {
+            checkOpen();
+            T result;
+            boolean openTransaction = false;
+            try {
+                result = task.run(writer);
+            } finally {
+                if (DBUtil.mayOpenTransaction(sql))
+                    openTransaction = DBUtil.rollbackOpenTransaction(writer);
+            }
+            if (openTransaction)
+                throw new SQLException(OPEN_TRANSACTION_ERROR);
+            return result;
+        } finally {
+            writeLock.unlock();
+            closeWriterIfIdle();
+            // Only now is the commit visible to the readers
+            changes.dispatch();
+        }
+    }
+
+    /**
+     * Closes the connections without waiting for a write in progress, the writer is then closed by that write once
+     * it is done. This is called from the server thread.
+     */
+    @Override
+    public void close(boolean snapshot) {
+        closed = true;
+        Connection con;
+        while ((con = idleReaders.poll()) != null) {
+            DBUtil.closeAll(null, con, null);
+        }
+        closeWriterIfIdle();
+    }
+
+    private void closeWriterIfIdle() {
+        if (closed && writeLock.tryLock()) {
+            try {
+                DBUtil.closeAll(null, writer, null);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void acquire(Semaphore semaphore) throws SQLException {
+        try {
+            if (!semaphore.tryAcquire(busyTimeout, TimeUnit.MILLISECONDS))
+                throw new SQLException("The database is busy.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database.");
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed)
+            throw new SQLException("The database has been closed.");
+    }
+}
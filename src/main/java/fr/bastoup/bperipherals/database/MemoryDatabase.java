@@ -0,0 +1,109 @@
+package fr.bastoup.bperipherals.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An SQLite database living in memory while its disk is inserted.
+ * The content is restored from the disk's database file when opened, and can be written back as a snapshot.
+ * An in-memory database only exists through its connection, so reads and writes share it one at a time.
+ */
+public class MemoryDatabase extends Database {
+
+    private final Connection connection;
+    private boolean dirty = false;
+    private boolean closed = false;
+
+    MemoryDatabase(String path, Connection connection) throws SQLException {
+        super(path);
+        this.connection = connection;
+        try {
+            restore();
+            changes.install(connection);
+        } catch (SQLException e) {
+            DBUtil.closeAll(null, connection, null);
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized <T> T read(DBTask<T> task) throws SQLException {
+        return task.run(connection);
+    }
+
+    @Override
+    public <T> T write(String sql, DBTask<T> task) throws SQLException {
+        try {
+            return writeLocked(sql, task);
+        } finally {
+            changes.dispatch();
+        }
+    }
+
+    private synchronized <T> T writeLocked(String sql, DBTask<T> task) throws SQLException {
+        dirty = true;
+        T result;
+        boolean openTransaction = false;
+        try {
+            result = task.run(connection);
+        } finally {
+            if (DBUtil.mayOpenTransaction(sql))
+                openTransaction = DBUtil.rollbackOpenTransaction(connection);
+        }
+        if (openTransaction)
+            throw new SQLException(OPEN_TRANSACTION_ERROR);
+        return result;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    private void restore() throws SQLException {
+        try {
+            Path file = Paths.get(path);
+            if (!Files.exists(file) || Files.size(file) == 0)
+                return;
+        } catch (IOException e) {
+            throw new SQLException("Unable to read database snapshot", e);
+        }
+
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate("restore from '" + path.replace("'", "''") + "'");
+        } finally {
+            DBUtil.closeAll(statement, null, null);
+        }
+    }
+
+    @Override
+    public synchronized void snapshot() throws SQLException {
+        // Snapshots are queued in the background and may run after the disk is ejected
+        if (!dirty || closed)
+            return;
+
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate("backup to '" + path.replace("'", "''") + "'");
+            dirty = false;
+        } finally {
+            DBUtil.closeAll(statement, null, null);
+        }
+    }
+
+    @Override
+    public synchronized void close(boolean snapshot) throws SQLException {
+        try {
+            if (snapshot)
+                snapshot();
+        } finally {
+            closed = true;
+            DBUtil.closeAll(null, connection, null);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package fr.bastoup.bperipherals.network;
+
+import fr.bastoup.bperipherals.util.BPeripheralsProperties;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.network.NetworkDirection;
+import net.minecraftforge.fml.network.NetworkRegistry;
+import net.minecraftforge.fml.network.simple.SimpleChannel;
+
+import java.util.Optional;
+
+public class BPeripheralsNetwork {
+
+    private static final String PROTOCOL_VERSION = "1";
+
+    public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+            new ResourceLocation(BPeripheralsProperties.MODID, "main"),
+            () -> PROTOCOL_VERSION,
+            PROTOCOL_VERSION::equals,
+            PROTOCOL_VERSION::equals
+    );
+
+    public static void init() {
+        int id = 0;
+        CHANNEL.registerMessage(id++, PacketFEMeterSync.class, PacketFEMeterSync::encode, PacketFEMeterSync::decode,
+                PacketFEMeterSync::handle, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+    }
+}
@@ -0,0 +1,22 @@
+package fr.bastoup.bperipherals.network;
+
+import fr.bastoup.bperipherals.peripherals.femeter.TileFEMeter;
+import net.minecraft.client.Minecraft;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+/**
+ * Applies the packets received from the server. Only loaded on the client.
+ */
+public class ClientPacketHandler {
+
+    public static void handleFEMeterSync(PacketFEMeterSync packet) {
+        World world = Minecraft.getInstance().level;
+        if (world == null || !world.isLoaded(packet.getPos()))
+            return;
+
+        TileEntity tile = world.getBlockEntity(packet.getPos());
+        if (tile instanceof TileFEMeter)
+            ((TileFEMeter) tile).applySync(packet);
+    }
+}
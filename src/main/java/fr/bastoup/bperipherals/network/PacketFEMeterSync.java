@@ -0,0 +1,78 @@
+package fr.bastoup.bperipherals.network;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * The state of an FE meter sent to the clients watching it. Only the fields flagged in the mask are written.
+ */
+public class PacketFEMeterSync {
+
+    public static final int ENERGY_STORED = 1;
+    public static final int TRANSFER_RATE = 2;
+    public static final int ENERGY_TRANSFERED = 4;
+
+    private final BlockPos pos;
+    private final int mask;
+    private final int energyStored;
+    private final int transferRate;
+    private final int energyTransfered;
+
+    public PacketFEMeterSync(BlockPos pos, int mask, int energyStored, int transferRate, int energyTransfered) {
+        this.pos = pos;
+        this.mask = mask;
+        this.energyStored = energyStored;
+        this.transferRate = transferRate;
+        this.energyTransfered = energyTransfered;
+    }
+
+    public static void encode(PacketFEMeterSync packet, PacketBuffer buf) {
+        buf.writeBlockPos(packet.pos);
+        buf.writeByte(packet.mask);
+        if ((packet.mask & ENERGY_STORED) != 0)
+            buf.writeVarInt(packet.energyStored);
+        if ((packet.mask & TRANSFER_RATE) != 0)
+            buf.writeVarInt(packet.transferRate);
+        if ((packet.mask & ENERGY_TRANSFERED) != 0)
+            buf.writeVarInt(packet.energyTransfered);
+    }
+
+    public static PacketFEMeterSync decode(PacketBuffer buf) {
+        BlockPos pos = buf.readBlockPos();
+        int mask = buf.readByte();
+        int energyStored = (mask & ENERGY_STORED) != 0 ? buf.readVarInt() : 0;
+        int transferRate = (mask & TRANSFER_RATE) != 0 ? buf.readVarInt() : 0;
+        int energyTransfered = (mask & ENERGY_TRANSFERED) != 0 ? buf.readVarInt() : 0;
+        return new PacketFEMeterSync(pos, mask, energyStored, transferRate, energyTransfered);
+    }
+
+    public static void handle(PacketFEMeterSync packet, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientPacketHandler.handleFEMeterSync(packet)));
+        ctx.get().setPacketHandled(true);
+    }
+
+    public BlockPos getPos() {
+        return pos;
+    }
+
+    public boolean has(int field) {
+        return (mask & field) != 0;
+    }
+
+    public int getEnergyStored() {
+        return energyStored;
+    }
+
+    public int getTransferRate() {
+        return transferRate;
+    }
+
+    public int getEnergyTransfered() {
+        return energyTransfered;
+    }
+}
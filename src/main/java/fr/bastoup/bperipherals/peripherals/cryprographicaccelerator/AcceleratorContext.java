@@ -0,0 +1,208 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import fr.bastoup.bperipherals.util.Config;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The server side state a computer holds on a cryptographic accelerator. It lives from attach to detach, and
+ * everything registered in it is released when the computer detaches.
+ */
+public class AcceleratorContext {
+
+    private final Set<AcceleratorSession> sessions = new HashSet<>();
+    // Keys parsed implicitly from their encoded form, they are never handed to Lua so eviction doesn't release them
+    private final Map<KeyId, CCKey> keyCache = new LinkedHashMap<KeyId, CCKey>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KeyId, CCKey> eldest) {
+            return size() > Config.KEY_CACHE_SIZE;
+        }
+    };
+    private final Set<CCKey> handles = new HashSet<>();
+    private final AtomicInteger taskIds = new AtomicInteger(0);
+    private final AtomicInteger passwordHashes = new AtomicInteger(0);
+    private final CpuBudget budget = new CpuBudget();
+    private volatile boolean closed = false;
+
+    @FunctionalInterface
+    interface Metered<T> {
+        T run() throws LuaException;
+    }
+
+    int nextTaskId() {
+        return taskIds.incrementAndGet();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    CpuBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Runs an operation if the CPU budget allows it, and charges the CPU time it took on the calling thread.
+     */
+    <T> T metered(Metered<T> operation) throws LuaException {
+        budget.check();
+        long start = CpuBudget.currentThreadTime();
+        try {
+            return operation.run();
+        } finally {
+            budget.charge(CpuBudget.currentThreadTime() - start);
+        }
+    }
+
+    /**
+     * Charges CPU time spent on other threads on behalf of this computer.
+     */
+    void charge(long nanos) {
+        budget.charge(nanos);
+    }
+
+    /**
+     * Reserves one of the password hashing slots of this computer, so a single computer can't fill the hashing pool.
+     */
+    void startPasswordHash() throws LuaException {
+        if (closed)
+            throw new LuaException("The peripheral is not attached.");
+        if (passwordHashes.incrementAndGet() > Config.MAX_CONCURRENT_PASSWORD_HASHES) {
+            passwordHashes.decrementAndGet();
+            throw new LuaException("You can't hash more than " + Config.MAX_CONCURRENT_PASSWORD_HASHES + " passwords at once.");
+        }
+    }
+
+    void endPasswordHash() {
+        passwordHashes.decrementAndGet();
+    }
+
+    synchronized void addSession(AcceleratorSession session) throws LuaException {
+        if (closed)
+            throw new LuaException("The peripheral is not attached.");
+        if (sessions.size() >= Config.MAX_CRYPTO_SESSIONS)
+            throw new LuaException("You can't have more than " + Config.MAX_CRYPTO_SESSIONS + " sessions open at once.");
+        sessions.add(session);
+    }
+
+    synchronized void removeSession(AcceleratorSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * Returns a parsed encoded RSA or EC key, parsing it only if it isn't in the cache yet. The returned key must not
+     * escape to Lua: it may be shared with other calls, and the least recently used keys leave the cache.
+     */
+    CCKey getKey(String algorithm, boolean isPrivate, byte[] encoded) throws LuaException, GeneralSecurityException {
+        KeyId id = new KeyId(algorithm, isPrivate, encoded);
+        synchronized (this) {
+            if (closed)
+                throw new LuaException("The peripheral is not attached.");
+            CCKey key = keyCache.get(id);
+            if (key != null)
+                return key;
+        }
+
+        KeyFactory factory = KeyFactory.getInstance(algorithm);
+        Key parsed = isPrivate ? factory.generatePrivate(new PKCS8EncodedKeySpec(encoded)) : factory.generatePublic(new X509EncodedKeySpec(encoded));
+        CCKey key = createKey(algorithm, isPrivate, parsed);
+
+        synchronized (this) {
+            if (closed)
+                throw new LuaException("The peripheral is not attached.");
+            CCKey existing = keyCache.putIfAbsent(id, key);
+            return existing != null ? existing : key;
+        }
+    }
+
+    /**
+     * Returns a new handle on an encoded RSA or EC key for Lua. Handles stay valid until they are released or the
+     * computer detaches, and a computer can't hold more than the configured number of them.
+     */
+    CCKey createHandle(String algorithm, boolean isPrivate, byte[] encoded) throws LuaException, GeneralSecurityException {
+        synchronized (this) {
+            if (handles.size() >= Config.MAX_KEY_HANDLES)
+                throw new LuaException("You can't have more than " + Config.MAX_KEY_HANDLES + " keys imported at once.");
+        }
+
+        // The handle gets its own cipher, the cached key's one is shared with the implicit calls
+        CCKey handle = createKey(algorithm, isPrivate, getKey(algorithm, isPrivate, encoded).getKey());
+
+        synchronized (this) {
+            if (closed)
+                throw new LuaException("The peripheral is not attached.");
+            if (handles.size() >= Config.MAX_KEY_HANDLES)
+                throw new LuaException("You can't have more than " + Config.MAX_KEY_HANDLES + " keys imported at once.");
+            handles.add(handle);
+            return handle;
+        }
+    }
+
+    private CCKey createKey(String algorithm, boolean isPrivate, Key key) throws GeneralSecurityException {
+        Cipher cipher = null;
+        if (algorithm.equals("RSA")) {
+            cipher = Cipher.getInstance("RSA");
+            cipher.init(isPrivate ? Cipher.DECRYPT_MODE : Cipher.ENCRYPT_MODE, key);
+        }
+        return new CCKey(this, isPrivate, key, cipher);
+    }
+
+    synchronized void removeKey(CCKey key) {
+        handles.remove(key);
+    }
+
+    void close() {
+        AcceleratorSession[] toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = sessions.toArray(new AcceleratorSession[0]);
+            sessions.clear();
+            for (CCKey key : handles) {
+                key.invalidate();
+            }
+            handles.clear();
+            keyCache.clear();
+        }
+
+        for (AcceleratorSession session : toClose) {
+            session.close();
+        }
+    }
+
+    private static final class KeyId {
+        private final String algorithm;
+        private final boolean isPrivate;
+        private final byte[] encoded;
+        private final int hash;
+
+        private KeyId(String algorithm, boolean isPrivate, byte[] encoded) {
+            this.algorithm = algorithm;
+            this.isPrivate = isPrivate;
+            this.encoded = encoded;
+            this.hash = 31 * (31 * Arrays.hashCode(encoded) + algorithm.hashCode()) + (isPrivate ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof KeyId))
+                return false;
+            KeyId other = (KeyId) o;
+            return isPrivate == other.isPrivate && algorithm.equals(other.algorithm) && Arrays.equals(encoded, other.encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+/**
+ * A stateful object handed to a computer, which must be released when the computer detaches.
+ */
+public interface AcceleratorSession {
+    void close();
+}
@@ -0,0 +1,87 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.ILuaCallback;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.MethodResult;
+import dan200.computercraft.api.peripheral.IComputerAccess;
+import dan200.computercraft.api.peripheral.NotAttachedException;
+import fr.bastoup.bperipherals.BPeripherals;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A piece of work run on an executor while the calling Lua coroutine waits for it. The result is sent back as a
+ * {@code cryptographic_task} event, and the coroutine resumes once it sees the event carrying its own id. The time
+ * the work took is charged to the computer's CPU budget.
+ */
+public class AcceleratorTask implements ILuaCallback {
+
+    public static final String EVENT = "cryptographic_task";
+
+    private final int id;
+
+    private AcceleratorTask(int id) {
+        this.id = id;
+    }
+
+    static MethodResult submit(IComputerAccess computer, AcceleratorContext context, Executor executor, Callable<Object> work, Runnable onDone) throws LuaException {
+        return submit(computer, context, executor, work, onDone, "Too many tasks are pending, try again later.");
+    }
+
+    /**
+     * @param rejectedMessage The error raised when the executor refuses the work.
+     */
+    static MethodResult submit(IComputerAccess computer, AcceleratorContext context, Executor executor, Callable<Object> work, Runnable onDone, String rejectedMessage) throws LuaException {
+        try {
+            context.getBudget().check();
+        } catch (LuaException e) {
+            onDone.run();
+            throw e;
+        }
+
+        int id = context.nextTaskId();
+        try {
+            executor.execute(() -> {
+                boolean success = false;
+                Object result;
+                long start = System.nanoTime();
+                try {
+                    result = work.call();
+                    success = true;
+                } catch (LuaException e) {
+                    result = e.getMessage();
+                } catch (Exception e) {
+                    BPeripherals.getLogger().error("Cryptographic task failed", e);
+                    result = "Internal error, check the logs for more info.";
+                } finally {
+                    context.getBudget().charge(System.nanoTime() - start);
+                    onDone.run();
+                }
+
+                if (context.isClosed())
+                    return;
+                try {
+                    computer.queueEvent(EVENT, computer.getAttachmentName(), id, success, result);
+                } catch (NotAttachedException ignore) {
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onDone.run();
+            throw new LuaException(rejectedMessage);
+        }
+        return MethodResult.pullEvent(EVENT, new AcceleratorTask(id));
+    }
+
+    @Nonnull
+    @Override
+    public MethodResult resume(Object[] args) throws LuaException {
+        if (args.length < 5 || !(args[2] instanceof Number) || ((Number) args[2]).intValue() != id)
+            return MethodResult.pullEvent(EVENT, this);
+        if (Boolean.TRUE.equals(args[3]))
+            return MethodResult.of(args[4]);
+        throw new LuaException(String.valueOf(args[4]));
+    }
+}
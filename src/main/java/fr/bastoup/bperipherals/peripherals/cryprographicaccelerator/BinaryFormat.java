@@ -0,0 +1,324 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.IArguments;
+import dan200.computercraft.api.lua.LuaException;
+import fr.bastoup.bperipherals.util.Config;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A subset of Lua 5.3's {@code string.pack} formats: {@code < > =} for the byte order, {@code b B h H i[n] I[n] l L j J}
+ * for integers, {@code f d n} for floats, {@code s[n]} for length prefixed strings, {@code z} for zero terminated
+ * strings, {@code c[n]} for fixed size strings and {@code x} for a padding byte. Like Lua, the byte order defaults to
+ * the native one. The format is read once, the output size is computed from it and the values are written into a
+ * buffer of that size, which can't be larger than the configured limit.
+ */
+public class BinaryFormat {
+
+    private static final int MAX_INT_SIZE = 8;
+
+    private final List<Item> items;
+
+    private BinaryFormat(List<Item> items) {
+        this.items = items;
+    }
+
+    public static BinaryFormat parse(String format) throws LuaException {
+        List<Item> items = new ArrayList<>();
+        ByteOrder order = ByteOrder.nativeOrder();
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i++);
+            int start = i;
+            while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                i++;
+            }
+            int size = -1;
+            if (i > start) {
+                try {
+                    size = Integer.parseInt(format.substring(start, i));
+                } catch (NumberFormatException e) {
+                    throw new LuaException("Invalid size in format option '" + c + "'.");
+                }
+            }
+
+            switch (c) {
+                case ' ':
+                    break;
+                case '<':
+                    order = ByteOrder.LITTLE_ENDIAN;
+                    break;
+                case '>':
+                    order = ByteOrder.BIG_ENDIAN;
+                    break;
+                case '=':
+                    order = ByteOrder.nativeOrder();
+                    break;
+                case 'b':
+                    items.add(new Item(Kind.INT, order, 1, true));
+                    break;
+                case 'B':
+                    items.add(new Item(Kind.INT, order, 1, false));
+                    break;
+                case 'h':
+                    items.add(new Item(Kind.INT, order, 2, true));
+                    break;
+                case 'H':
+                    items.add(new Item(Kind.INT, order, 2, false));
+                    break;
+                case 'i':
+                    items.add(new Item(Kind.INT, order, checkIntSize(c, size, 4), true));
+                    break;
+                case 'I':
+                    items.add(new Item(Kind.INT, order, checkIntSize(c, size, 4), false));
+                    break;
+                case 'l':
+                case 'j':
+                    items.add(new Item(Kind.INT, order, 8, true));
+                    break;
+                case 'L':
+                case 'J':
+                    items.add(new Item(Kind.INT, order, 8, false));
+                    break;
+                case 'f':
+                    items.add(new Item(Kind.FLOAT, order, 4, true));
+                    break;
+                case 'd':
+                case 'n':
+                    items.add(new Item(Kind.DOUBLE, order, 8, true));
+                    break;
+                case 's':
+                    items.add(new Item(Kind.PREFIXED_STRING, order, checkIntSize(c, size, 8), false));
+                    break;
+                case 'z':
+                    items.add(new Item(Kind.ZERO_STRING, order, 0, false));
+                    break;
+                case 'c':
+                    if (size < 0)
+                        throw new LuaException("Missing size for format option 'c'.");
+                    if (size > Config.MAX_PACK_SIZE)
+                        throw new LuaException("Size for format option 'c' must be at most " + Config.MAX_PACK_SIZE + ".");
+                    items.add(new Item(Kind.FIXED_STRING, order, size, false));
+                    break;
+                case 'x':
+                    items.add(new Item(Kind.PADDING, order, 1, false));
+                    break;
+                default:
+                    throw new LuaException("Invalid format option '" + c + "'.");
+            }
+        }
+        return new BinaryFormat(items);
+    }
+
+    private static int checkIntSize(char option, int size, int def) throws LuaException {
+        if (size < 0)
+            return def;
+        if (size < 1 || size > MAX_INT_SIZE)
+            throw new LuaException("Integral size for format option '" + option + "' must be between 1 and " + MAX_INT_SIZE + ".");
+        return size;
+    }
+
+    public byte[] pack(IArguments args, int first) throws LuaException {
+        // The strings are read in a first pass to compute the exact size of the output
+        byte[][] strings = new byte[items.size()][];
+        long size = 0;
+        int arg = first;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            switch (item.kind) {
+                case PADDING:
+                    size += 1;
+                    if (size > Config.MAX_PACK_SIZE)
+                        throw new LuaException("Packed data can't be larger than " + Config.MAX_PACK_SIZE + " bytes.");
+                    continue;
+                case PREFIXED_STRING:
+                case ZERO_STRING:
+                case FIXED_STRING:
+                    strings[i] = args.getString(arg).getBytes(StandardCharsets.ISO_8859_1);
+                    size += item.getPackedSize(strings[i]);
+                    break;
+                default:
+                    size += item.size;
+            }
+            if (size > Config.MAX_PACK_SIZE)
+                throw new LuaException("Packed data can't be larger than " + Config.MAX_PACK_SIZE + " bytes.");
+            arg++;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        arg = first;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            out.order(item.order);
+            switch (item.kind) {
+                case INT:
+                    writeInt(out, item, args.getLong(arg));
+                    break;
+                case FLOAT:
+                    out.putFloat((float) args.getDouble(arg));
+                    break;
+                case DOUBLE:
+                    out.putDouble(args.getDouble(arg));
+                    break;
+                case PREFIXED_STRING:
+                    writeInt(out, new Item(Kind.INT, item.order, item.size, false), strings[i].length);
+                    out.put(strings[i]);
+                    break;
+                case ZERO_STRING:
+                    for (byte b : strings[i]) {
+                        if (b == 0)
+                            throw new LuaException("String for format option 'z' contains zeros.");
+                    }
+                    out.put(strings[i]);
+                    out.put((byte) 0);
+                    break;
+                case FIXED_STRING:
+                    if (strings[i].length > item.size)
+                        throw new LuaException("String longer than the size of format option 'c'.");
+                    out.put(strings[i]);
+                    out.position(out.position() + item.size - strings[i].length);
+                    break;
+                case PADDING:
+                    out.put((byte) 0);
+                    continue;
+            }
+            arg++;
+        }
+        return out.array();
+    }
+
+    private static void writeInt(ByteBuffer out, Item item, long value) throws LuaException {
+        if (item.size < 8) {
+            long min = item.signed ? -(1L << (item.size * 8 - 1)) : 0;
+            long max = item.signed ? (1L << (item.size * 8 - 1)) - 1 : (1L << (item.size * 8)) - 1;
+            if (value < min || value > max)
+                throw new LuaException("Integer overflow for a " + item.size + " bytes integer.");
+        }
+
+        if (item.order == ByteOrder.BIG_ENDIAN) {
+            for (int i = item.size - 1; i >= 0; i--) {
+                out.put((byte) (value >>> (8 * i)));
+            }
+        } else {
+            for (int i = 0; i < item.size; i++) {
+                out.put((byte) (value >>> (8 * i)));
+            }
+        }
+    }
+
+    /**
+     * Reads the values described by the format, followed by the position of the first unread byte, counted from 1.
+     */
+    public Object[] unpack(ByteBuffer data, int position) throws LuaException {
+        if (position < 1 || position > data.remaining() + 1)
+            throw new LuaException("Initial position out of string.");
+
+        ByteBuffer in = data.slice();
+        in.position(position - 1);
+        List<Object> values = new ArrayList<>(items.size() + 1);
+        try {
+            for (Item item : items) {
+                in.order(item.order);
+                switch (item.kind) {
+                    case INT:
+                        values.add(readInt(in, item));
+                        break;
+                    case FLOAT:
+                        values.add((double) in.getFloat());
+                        break;
+                    case DOUBLE:
+                        values.add(in.getDouble());
+                        break;
+                    case PREFIXED_STRING: {
+                        long length = readInt(in, new Item(Kind.INT, item.order, item.size, false));
+                        if (length < 0 || length > in.remaining())
+                            throw new LuaException("Data string too short.");
+                        values.add(readBytes(in, (int) length));
+                        break;
+                    }
+                    case ZERO_STRING: {
+                        int end = in.position();
+                        while (end < in.limit() && in.get(end) != 0) {
+                            end++;
+                        }
+                        if (end == in.limit())
+                            throw new LuaException("Unfinished string for format option 'z'.");
+                        values.add(readBytes(in, end - in.position()));
+                        in.get();
+                        break;
+                    }
+                    case FIXED_STRING:
+                        if (item.size > in.remaining())
+                            throw new LuaException("Data string too short.");
+                        values.add(readBytes(in, item.size));
+                        break;
+                    case PADDING:
+                        in.get();
+                        break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new LuaException("Data string too short.");
+        }
+        values.add(in.position() + 1);
+        return values.toArray();
+    }
+
+    private static long readInt(ByteBuffer in, Item item) {
+        long value = 0;
+        if (item.order == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i < item.size; i++) {
+                value = value << 8 | (in.get() & 0xFF);
+            }
+        } else {
+            for (int i = 0; i < item.size; i++) {
+                value |= (long) (in.get() & 0xFF) << (8 * i);
+            }
+        }
+        if (item.signed && item.size < 8) {
+            int shift = 64 - item.size * 8;
+            value = value << shift >> shift;
+        }
+        return value;
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int length) {
+        byte[] res = new byte[length];
+        in.get(res);
+        return res;
+    }
+
+    private enum Kind {
+        INT, FLOAT, DOUBLE, PREFIXED_STRING, ZERO_STRING, FIXED_STRING, PADDING
+    }
+
+    private static final class Item {
+        private final Kind kind;
+        private final ByteOrder order;
+        private final int size;
+        private final boolean signed;
+
+        private Item(Kind kind, ByteOrder order, int size, boolean signed) {
+            this.kind = kind;
+            this.order = order;
+            this.size = size;
+            this.signed = signed;
+        }
+
+        private long getPackedSize(byte[] string) {
+            switch (kind) {
+                case PREFIXED_STRING:
+                    return (long) size + string.length;
+                case ZERO_STRING:
+                    return string.length + 1;
+                default:
+                    return size;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bitwise operations on binary strings. The inputs are read in place, eight bytes at a time where possible, and only
+ * the result is allocated. Bits are numbered from 0, starting at the most significant bit of the first byte.
+ */
+public class Bitwise {
+
+    @FunctionalInterface
+    interface Operator {
+        long apply(long a, long b);
+    }
+
+    static byte[] combine(ByteBuffer a, ByteBuffer b, Operator operator) throws LuaException {
+        int n = a.remaining();
+        if (b.remaining() != n)
+            throw new LuaException("Both strings must have the same length.");
+
+        int offA = a.position();
+        int offB = b.position();
+        ByteBuffer out = ByteBuffer.allocate(n);
+        int i = 0;
+        for (; i + 8 <= n; i += 8) {
+            out.putLong(i, operator.apply(a.getLong(offA + i), b.getLong(offB + i)));
+        }
+        for (; i < n; i++) {
+            out.put(i, (byte) operator.apply(a.get(offA + i), b.get(offB + i)));
+        }
+        return out.array();
+    }
+
+    static boolean constantTimeEquals(ByteBuffer a, ByteBuffer b) {
+        int n = a.remaining();
+        if (b.remaining() != n)
+            return false;
+
+        int offA = a.position();
+        int offB = b.position();
+        int diff = 0;
+        for (int i = 0; i < n; i++) {
+            diff |= a.get(offA + i) ^ b.get(offB + i);
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Rotates the whole string left by the given number of bits, or right if it is negative.
+     */
+    static byte[] rotate(ByteBuffer data, long bits) {
+        int n = data.remaining();
+        byte[] res = new byte[n];
+        if (n == 0)
+            return res;
+
+        int off = data.position();
+        long total = n * 8L;
+        long shift = ((bits % total) + total) % total;
+        int byteShift = (int) (shift / 8);
+        int bitShift = (int) (shift % 8);
+        for (int i = 0; i < n; i++) {
+            int high = data.get(off + (i + byteShift) % n) & 0xFF;
+            int low = data.get(off + (i + byteShift + 1) % n) & 0xFF;
+            res[i] = (byte) (high << bitShift | low >>> (8 - bitShift));
+        }
+        return res;
+    }
+
+    static void checkBit(ByteBuffer data, long index) throws LuaException {
+        if (index < 0 || index >= data.remaining() * 8L)
+            throw new LuaException("Bit index must be between 0 and " + (data.remaining() * 8L - 1));
+    }
+
+    static boolean getBit(ByteBuffer data, long index) throws LuaException {
+        checkBit(data, index);
+        return (data.get(data.position() + (int) (index / 8)) & (0x80 >>> (index % 8))) != 0;
+    }
+
+    static byte[] setBit(ByteBuffer data, long index, boolean value) throws LuaException {
+        checkBit(data, index);
+        byte[] res = new byte[data.remaining()];
+        data.duplicate().get(res);
+        int mask = 0x80 >>> (index % 8);
+        int i = (int) (index / 8);
+        res[i] = (byte) (value ? res[i] | mask : res[i] & ~mask);
+        return res;
+    }
+}
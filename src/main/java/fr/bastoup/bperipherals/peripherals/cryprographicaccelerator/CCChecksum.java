@@ -0,0 +1,35 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+
+import java.nio.ByteBuffer;
+
+public class CCChecksum {
+    private final AcceleratorContext context;
+    private final Checksums.Engine engine;
+
+    CCChecksum(AcceleratorContext context, Checksums.Engine engine) {
+        this.context = context;
+        this.engine = engine;
+    }
+
+    @LuaFunction
+    public final synchronized CCChecksum update(ByteBuffer data) throws LuaException {
+        return context.metered(() -> {
+            engine.update(data);
+            return this;
+        });
+    }
+
+    @LuaFunction
+    public final synchronized Object getValue() {
+        return engine.getValue();
+    }
+
+    @LuaFunction
+    public final synchronized CCChecksum reset() {
+        engine.reset();
+        return this;
+    }
+}
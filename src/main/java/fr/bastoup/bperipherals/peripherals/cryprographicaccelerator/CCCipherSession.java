@@ -0,0 +1,78 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class CCCipherSession implements AcceleratorSession {
+    private final AcceleratorContext context;
+    private Cipher cipher;
+
+    CCCipherSession(AcceleratorContext context, Cipher cipher) {
+        this.context = context;
+        this.cipher = cipher;
+    }
+
+    private void checkOpen() throws LuaException {
+        if (cipher == null)
+            throw new LuaException("This cipher session is closed.");
+    }
+
+    @LuaFunction
+    public final synchronized byte[] update(ByteBuffer chunk) throws LuaException {
+        checkOpen();
+        return context.metered(() -> {
+            ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(chunk.remaining()));
+            try {
+                cipher.update(chunk, out);
+            } catch (ShortBufferException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+            return out.position() == out.capacity() ? out.array() : Arrays.copyOf(out.array(), out.position());
+        });
+    }
+
+    @LuaFunction
+    public final synchronized CCCipherSession updateAAD(ByteBuffer aad) throws LuaException {
+        checkOpen();
+        try {
+            cipher.updateAAD(aad);
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            throw new LuaException("Additional authenticated data is only supported in gcm mode, before any update.");
+        }
+        return this;
+    }
+
+    @LuaFunction
+    public final synchronized byte[] finish() throws LuaException {
+        checkOpen();
+        try {
+            return context.metered(() -> {
+                try {
+                    return cipher.doFinal();
+                } catch (IllegalBlockSizeException | BadPaddingException e) {
+                    throw new LuaException(e.getMessage());
+                }
+            });
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    @LuaFunction
+    public final synchronized void close() {
+        if (cipher == null)
+            return;
+
+        cipher = null;
+        context.removeSession(this);
+    }
+}
@@ -0,0 +1,287 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+import fr.bastoup.bperipherals.util.Config;
+import fr.bastoup.bperipherals.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A zlib, raw Deflate or GZIP compression or decompression stream. Every chunk given to it returns the output produced so far,
+ * and the stream fails once its total output goes over the configured maximum, so decompression bombs are cut short.
+ * The GZIP header and trailer are handled here, around a raw deflate stream.
+ */
+public class CCCompressionStream implements AcceleratorSession {
+
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private enum Format {
+        ZLIB, DEFLATE, GZIP
+    }
+
+    private enum State {
+        HEADER, BODY, TRAILER, DONE
+    }
+
+    private final AcceleratorContext context;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private final byte[] chunk = new byte[8192];
+    private Deflater deflater;
+    private Inflater inflater;
+    private State state;
+    private byte[] buffered = new byte[0];
+    private long produced = 0;
+    private boolean closed = false;
+
+    private CCCompressionStream(AcceleratorContext context, boolean gzip, Deflater deflater, Inflater inflater) {
+        this.context = context;
+        this.gzip = gzip;
+        this.crc = gzip ? new CRC32() : null;
+        this.deflater = deflater;
+        this.inflater = inflater;
+        this.state = gzip ? State.HEADER : State.BODY;
+    }
+
+    /**
+     * zlib wraps the deflate data with its own header and Adler-32 trailer, deflate is the raw data and GZIP gets its
+     * header and trailer from this class.
+     */
+    private static Format getFormat(String format) throws LuaException {
+        switch (format.toLowerCase()) {
+            case "zlib":
+                return Format.ZLIB;
+            case "deflate":
+                return Format.DEFLATE;
+            case "gzip":
+                return Format.GZIP;
+            default:
+                throw new LuaException("Format must be either zlib, deflate or gzip.");
+        }
+    }
+
+    static CCCompressionStream compressor(AcceleratorContext context, String format, int level) throws LuaException {
+        if (level < 0 || level > Config.MAX_COMPRESSION_LEVEL)
+            throw new LuaException("Level must be between 0 and " + Config.MAX_COMPRESSION_LEVEL);
+        Format f = getFormat(format);
+        return new CCCompressionStream(context, f == Format.GZIP, new Deflater(level, f != Format.ZLIB), null);
+    }
+
+    static CCCompressionStream decompressor(AcceleratorContext context, String format) throws LuaException {
+        Format f = getFormat(format);
+        return new CCCompressionStream(context, f == Format.GZIP, null, new Inflater(f != Format.ZLIB));
+    }
+
+    private void checkOpen() throws LuaException {
+        if (closed)
+            throw new LuaException("This compression stream is closed.");
+    }
+
+    private void write(ByteArrayOutputStream out, byte[] data, int length) throws LuaException {
+        produced += length;
+        if (produced > Config.MAX_COMPRESSION_OUTPUT) {
+            close();
+            throw new LuaException("The output is larger than " + Config.MAX_COMPRESSION_OUTPUT + " bytes.");
+        }
+        out.write(data, 0, length);
+    }
+
+    private void writeIntLE(ByteArrayOutputStream out, long value) throws LuaException {
+        byte[] bytes = {(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+        write(out, bytes, bytes.length);
+    }
+
+    private static int readIntLE(byte[] data, int off) {
+        return (data[off] & 0xFF) | (data[off + 1] & 0xFF) << 8 | (data[off + 2] & 0xFF) << 16 | (data[off + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Runs a chunk of input through the stream and returns the output it produced.
+     */
+    synchronized byte[] process(ByteBuffer input, boolean finish) throws LuaException {
+        checkOpen();
+        try {
+            byte[] res = deflater != null ? deflate(Util.getByteBufferArray(input), finish) : inflate(Util.getByteBufferArray(input), finish);
+            if (finish)
+                close();
+            return res;
+        } catch (LuaException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private byte[] deflate(byte[] input, boolean finish) throws LuaException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+        if (state == State.HEADER) {
+            byte[] header = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+            write(out, header, header.length);
+            state = State.BODY;
+        }
+
+        if (crc != null)
+            crc.update(input);
+        deflater.setInput(input);
+        while (!deflater.needsInput()) {
+            write(out, chunk, deflater.deflate(chunk));
+        }
+
+        if (finish) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                write(out, chunk, deflater.deflate(chunk));
+            }
+            if (gzip) {
+                writeIntLE(out, crc.getValue());
+                writeIntLE(out, deflater.getBytesRead());
+            }
+            state = State.DONE;
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] inflate(byte[] input, boolean finish) throws LuaException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 2 + 64);
+        byte[] data = input;
+        if (buffered.length > 0) {
+            data = new byte[buffered.length + input.length];
+            System.arraycopy(buffered, 0, data, 0, buffered.length);
+            System.arraycopy(input, 0, data, buffered.length, input.length);
+            buffered = new byte[0];
+        }
+
+        int off = 0;
+        loop:
+        while (true) {
+            switch (state) {
+                case HEADER: {
+                    int length = getGzipHeaderLength(data, off);
+                    if (length < 0)
+                        break loop;
+                    off += length;
+                    state = State.BODY;
+                    break;
+                }
+                case BODY: {
+                    inflater.setInput(data, off, data.length - off);
+                    off = data.length;
+                    try {
+                        while (!inflater.finished()) {
+                            int n = inflater.inflate(chunk);
+                            if (n == 0) {
+                                if (inflater.needsDictionary())
+                                    throw new LuaException("Compressed data using a preset dictionary is not supported.");
+                                if (inflater.needsInput())
+                                    break;
+                            }
+                            if (crc != null)
+                                crc.update(chunk, 0, n);
+                            write(out, chunk, n);
+                        }
+                    } catch (DataFormatException e) {
+                        throw new LuaException("Invalid compressed data.");
+                    }
+                    if (!inflater.finished())
+                        break loop;
+                    off = data.length - inflater.getRemaining();
+                    state = gzip ? State.TRAILER : State.DONE;
+                    break;
+                }
+                case TRAILER:
+                    if (data.length - off < GZIP_TRAILER_SIZE)
+                        break loop;
+                    if (readIntLE(data, off) != (int) crc.getValue() || readIntLE(data, off + 4) != (int) inflater.getBytesWritten())
+                        throw new LuaException("Corrupted compressed data, the checksum does not match.");
+                    off += GZIP_TRAILER_SIZE;
+                    state = State.DONE;
+                    break;
+                case DONE:
+                    if (off < data.length)
+                        throw new LuaException("Unexpected data after the end of the compressed stream.");
+                    break loop;
+            }
+        }
+
+        if (off < data.length && state != State.BODY) {
+            buffered = new byte[data.length - off];
+            System.arraycopy(data, off, buffered, 0, buffered.length);
+        }
+        if (finish && state != State.DONE)
+            throw new LuaException("The compressed data is truncated.");
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the length of the GZIP header at the given offset, or -1 if it isn't complete yet.
+     */
+    private static int getGzipHeaderLength(byte[] data, int off) throws LuaException {
+        if (data.length - off < GZIP_HEADER_SIZE)
+            return -1;
+        if (((data[off] & 0xFF) | (data[off + 1] & 0xFF) << 8) != GZIP_MAGIC || data[off + 2] != Deflater.DEFLATED)
+            throw new LuaException("This is not valid gzip data.");
+
+        int flags = data[off + 3] & 0xFF;
+        int pos = off + GZIP_HEADER_SIZE;
+        if ((flags & FEXTRA) != 0) {
+            if (pos + 2 > data.length)
+                return -1;
+            pos += 2 + ((data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8);
+        }
+        if ((flags & FNAME) != 0)
+            pos = skipZeroTerminated(data, pos);
+        if (pos >= 0 && (flags & FCOMMENT) != 0)
+            pos = skipZeroTerminated(data, pos);
+        if (pos >= 0 && (flags & FHCRC) != 0)
+            pos += 2;
+        if (pos < 0 || pos > data.length)
+            return -1;
+        return pos - off;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int pos) {
+        while (pos < data.length) {
+            if (data[pos++] == 0)
+                return pos;
+        }
+        return -1;
+    }
+
+    @LuaFunction
+    public final byte[] update(ByteBuffer data) throws LuaException {
+        return context.metered(() -> process(data, false));
+    }
+
+    @LuaFunction
+    public final byte[] finish() throws LuaException {
+        return context.metered(() -> process(ByteBuffer.allocate(0), true));
+    }
+
+    @Override
+    @LuaFunction
+    public final synchronized void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        if (deflater != null)
+            deflater.end();
+        if (inflater != null)
+            inflater.end();
+        deflater = null;
+        inflater = null;
+        if (context != null)
+            context.removeSession(this);
+    }
+}
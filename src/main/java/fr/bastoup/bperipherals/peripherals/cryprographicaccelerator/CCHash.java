@@ -0,0 +1,36 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+public class CCHash {
+    private final AcceleratorContext context;
+    private final MessageDigest digest;
+
+    CCHash(AcceleratorContext context, MessageDigest digest) {
+        this.context = context;
+        this.digest = digest;
+    }
+
+    @LuaFunction
+    public final synchronized CCHash update(ByteBuffer data) throws LuaException {
+        return context.metered(() -> {
+            digest.update(data);
+            return this;
+        });
+    }
+
+    @LuaFunction
+    public final synchronized byte[] digest() throws LuaException {
+        return context.metered(digest::digest);
+    }
+
+    @LuaFunction
+    public final synchronized CCHash reset() {
+        digest.reset();
+        return this;
+    }
+}
@@ -0,0 +1,36 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+
+public class CCHmac {
+    private final AcceleratorContext context;
+    private final Mac mac;
+
+    CCHmac(AcceleratorContext context, Mac mac) {
+        this.context = context;
+        this.mac = mac;
+    }
+
+    @LuaFunction
+    public final synchronized CCHmac update(ByteBuffer data) throws LuaException {
+        return context.metered(() -> {
+            mac.update(data);
+            return this;
+        });
+    }
+
+    @LuaFunction
+    public final synchronized byte[] digest() throws LuaException {
+        return context.metered(mac::doFinal);
+    }
+
+    @LuaFunction
+    public final synchronized CCHmac reset() {
+        mac.reset();
+        return this;
+    }
+}
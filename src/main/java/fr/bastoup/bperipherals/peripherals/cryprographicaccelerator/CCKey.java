@@ -0,0 +1,86 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.nio.ByteBuffer;
+import java.security.Key;
+
+/**
+ * An opaque handle on a parsed key. RSA handles also hold a cipher already initialized with the key. RSA ciphers
+ * return to their initialized state after each operation, so the handle can be used any number of times without
+ * parsing the key or initializing the cipher again.
+ */
+public class CCKey {
+    private final AcceleratorContext context;
+    private final boolean isPrivate;
+    private final Key key;
+    private final Cipher cipher;
+    private boolean released = false;
+
+    CCKey(AcceleratorContext context, boolean isPrivate, Key key, Cipher cipher) {
+        this.context = context;
+        this.isPrivate = isPrivate;
+        this.key = key;
+        this.cipher = cipher;
+    }
+
+    synchronized Key getKey() throws LuaException {
+        if (released)
+            throw new LuaException("This key has been released.");
+        return key;
+    }
+
+    boolean isPrivate() {
+        return isPrivate;
+    }
+
+    synchronized byte[] process(ByteBuffer data) throws LuaException {
+        if (released)
+            throw new LuaException("This key has been released.");
+        if (cipher == null)
+            throw new LuaException("Only RSA keys can encrypt or decrypt.");
+
+        try {
+            return CryptoEngines.doFinal(cipher, data);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new LuaException(e.getMessage());
+        } catch (ShortBufferException e) {
+            e.printStackTrace();
+            throw new LuaException("Internal error, check the logs for more info.");
+        }
+    }
+
+    synchronized void invalidate() {
+        released = true;
+    }
+
+    @LuaFunction
+    public final String getType() {
+        return isPrivate ? "private" : "public";
+    }
+
+    @LuaFunction
+    public final byte[] encrypt(ByteBuffer data) throws LuaException {
+        if (isPrivate)
+            throw new LuaException("Only public keys can encrypt.");
+        return process(data);
+    }
+
+    @LuaFunction
+    public final byte[] decrypt(ByteBuffer data) throws LuaException {
+        if (!isPrivate)
+            throw new LuaException("Only private keys can decrypt.");
+        return process(data);
+    }
+
+    @LuaFunction
+    public final void release() {
+        invalidate();
+        context.removeKey(this);
+    }
+}
@@ -0,0 +1,296 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.LuaFunction;
+import fr.bastoup.bperipherals.util.Util;
+
+import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * One end of an encrypted channel. Both ends exchange the ephemeral P-256 public keys of their channels, and
+ * {@code connect} derives one AES-256-GCM key per direction from the ECDH secret with HKDF-SHA256. Messages carry
+ * the 8 bytes counter their nonce is built from, and received counters go through a 64 messages sliding window so
+ * replayed messages are refused. The private key and the session keys never leave the server.
+ * <p>
+ * The key exchange alone is NOT authenticated: anyone relaying the public keys can sit in the middle. A channel
+ * created with a static ECDSA identity key signs its ephemeral key, and {@code connect} verifies the peer's signature
+ * when given the peer's identity public key. Otherwise both ends can compare {@code getFingerprint} out of band.
+ */
+public class CCSecureChannel implements AcceleratorSession {
+
+    private static final String CURVE = "secp256r1";
+    private static final int KEY_LENGTH = 32;
+    private static final int NONCE_LENGTH = 12;
+    private static final int COUNTER_LENGTH = 8;
+    private static final int TAG_LENGTH = 128;
+    private static final int WINDOW_SIZE = 64;
+    private static final byte[] INFO = "bperipherals secure channel".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SIGNATURE_CONTEXT = "bperipherals secure channel key".getBytes(StandardCharsets.US_ASCII);
+    private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    private final AcceleratorContext context;
+    private KeyPair keyPair;
+    private final byte[] signature;
+    private byte[] fingerprint;
+    private SecretKeySpec sendKey;
+    private SecretKeySpec receiveKey;
+    private long sendCounter = 0;
+    private long highestReceived = 0;
+    private long window = 0;
+    private boolean closed = false;
+
+    /**
+     * @param identity A static EC private key signing the ephemeral public key, or null for an anonymous channel.
+     */
+    CCSecureChannel(AcceleratorContext context, PrivateKey identity) throws GeneralSecurityException {
+        this.context = context;
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+        kpGen.initialize(new ECGenParameterSpec(CURVE), CryptoEngines.getRandom());
+        this.keyPair = kpGen.generateKeyPair();
+
+        if (identity != null) {
+            Signature signer = CryptoEngines.getSignature(SIGNATURE_ALGORITHM);
+            signer.initSign(identity, CryptoEngines.getRandom());
+            signer.update(SIGNATURE_CONTEXT);
+            signer.update(keyPair.getPublic().getEncoded());
+            this.signature = signer.sign();
+        } else {
+            this.signature = null;
+        }
+    }
+
+    private void checkOpen() throws LuaException {
+        if (closed)
+            throw new LuaException("This channel is closed.");
+    }
+
+    private void checkConnected() throws LuaException {
+        checkOpen();
+        if (sendKey == null)
+            throw new LuaException("This channel is not connected.");
+    }
+
+    @LuaFunction
+    public final synchronized byte[] getPublicKey() throws LuaException {
+        checkOpen();
+        return keyPair.getPublic().getEncoded();
+    }
+
+    /**
+     * The signature of the ephemeral public key by the identity key, nil if the channel was created without one.
+     */
+    @LuaFunction
+    public final synchronized byte[] getSignature() throws LuaException {
+        checkOpen();
+        return signature;
+    }
+
+    /**
+     * A hash of both ephemeral public keys, the same on both ends of a channel that isn't intercepted.
+     */
+    @LuaFunction
+    public final synchronized byte[] getFingerprint() throws LuaException {
+        checkConnected();
+        return fingerprint;
+    }
+
+    @LuaFunction
+    public final synchronized boolean isConnected() {
+        return !closed && sendKey != null;
+    }
+
+    @LuaFunction
+    public final synchronized void connect(ByteBuffer peerPublicKey, Optional<ByteBuffer> peerSignature, Optional<ByteBuffer> peerIdentityKey) throws LuaException {
+        checkOpen();
+        if (sendKey != null)
+            throw new LuaException("This channel is already connected.");
+        if (peerIdentityKey.isPresent() && !peerSignature.isPresent())
+            throw new LuaException("The peer's signature is needed to check its identity.");
+
+        byte[] ownKey = keyPair.getPublic().getEncoded();
+        byte[] peerKey = Util.getByteBufferArray(peerPublicKey);
+        int order = compare(ownKey, peerKey);
+        if (order == 0)
+            throw new LuaException("A channel can't be connected to itself.");
+
+        context.metered(() -> {
+            try {
+                KeyFactory factory = KeyFactory.getInstance("EC");
+                PublicKey peer = factory.generatePublic(new X509EncodedKeySpec(peerKey));
+                if (peerIdentityKey.isPresent()) {
+                    Signature verifier = CryptoEngines.getSignature(SIGNATURE_ALGORITHM);
+                    verifier.initVerify(factory.generatePublic(new X509EncodedKeySpec(Util.getByteBufferArray(peerIdentityKey.get()))));
+                    boolean valid;
+                    try {
+                        verifier.update(SIGNATURE_CONTEXT);
+                        verifier.update(peerKey);
+                        valid = verifier.verify(Util.getByteBufferArray(peerSignature.get()));
+                    } catch (SignatureException e) {
+                        // Malformed signature
+                        valid = false;
+                    }
+                    if (!valid)
+                        throw new LuaException("The peer's public key isn't signed by its identity key.");
+                }
+
+                KeyAgreement agreement = CryptoEngines.getKeyAgreement("ECDH");
+                agreement.init(keyPair.getPrivate());
+                agreement.doPhase(peer, true);
+                byte[] secret = agreement.generateSecret();
+
+                // Both ends order the public keys the same way, so they agree on which key is used in which direction
+                byte[] salt = order < 0 ? concat(ownKey, peerKey) : concat(peerKey, ownKey);
+                fingerprint = CryptoEngines.getDigest("SHA-256").digest(salt);
+                byte[] keys = hkdf(secret, salt, INFO, 2 * KEY_LENGTH);
+                Arrays.fill(secret, (byte) 0);
+                SecretKeySpec first = new SecretKeySpec(keys, 0, KEY_LENGTH, "AES");
+                SecretKeySpec second = new SecretKeySpec(keys, KEY_LENGTH, KEY_LENGTH, "AES");
+                Arrays.fill(keys, (byte) 0);
+                sendKey = order < 0 ? first : second;
+                receiveKey = order < 0 ? second : first;
+            } catch (InvalidKeyException | InvalidKeySpecException | IllegalStateException e) {
+                throw new LuaException(e.getMessage());
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+            return null;
+        });
+
+        // The ephemeral private key is not needed anymore
+        keyPair = new KeyPair(keyPair.getPublic(), null);
+    }
+
+    @LuaFunction
+    public final synchronized byte[] seal(ByteBuffer data, Optional<ByteBuffer> aad) throws LuaException {
+        checkConnected();
+        if (sendCounter == Long.MAX_VALUE)
+            throw new LuaException("This channel has sent too many messages, create a new one.");
+        long counter = ++sendCounter;
+
+        return context.metered(() -> {
+            try {
+                Cipher cipher = CryptoEngines.getCipher("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, sendKey, new GCMParameterSpec(TAG_LENGTH, getNonce(counter)));
+                if (aad.isPresent())
+                    cipher.updateAAD(aad.get());
+                ByteBuffer out = ByteBuffer.allocate(COUNTER_LENGTH + cipher.getOutputSize(data.remaining()));
+                out.putLong(counter);
+                cipher.doFinal(data, out);
+                return out.array();
+            } catch (GeneralSecurityException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final synchronized byte[] open(ByteBuffer message, Optional<ByteBuffer> aad) throws LuaException {
+        checkConnected();
+        if (message.remaining() < COUNTER_LENGTH + TAG_LENGTH / 8)
+            throw new LuaException("This message is too short.");
+
+        long counter = message.getLong();
+        if (counter <= 0)
+            throw new LuaException("This message is invalid.");
+        if (counter <= highestReceived) {
+            long age = highestReceived - counter;
+            if (age >= WINDOW_SIZE)
+                throw new LuaException("This message is too old.");
+            if ((window & (1L << age)) != 0)
+                throw new LuaException("This message has already been received.");
+        }
+
+        byte[] res = context.metered(() -> {
+            try {
+                Cipher cipher = CryptoEngines.getCipher("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, receiveKey, new GCMParameterSpec(TAG_LENGTH, getNonce(counter)));
+                if (aad.isPresent())
+                    cipher.updateAAD(aad.get());
+                return CryptoEngines.doFinal(cipher, message);
+            } catch (AEADBadTagException e) {
+                throw new LuaException("Authentication failed, the message has been tampered with.");
+            } catch (GeneralSecurityException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+
+        // Only authenticated messages move the window
+        if (counter > highestReceived) {
+            long shift = counter - highestReceived;
+            window = shift >= WINDOW_SIZE ? 1 : window << shift | 1;
+            highestReceived = counter;
+        } else {
+            window |= 1L << (highestReceived - counter);
+        }
+        return res;
+    }
+
+    @Override
+    @LuaFunction
+    public final synchronized void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        keyPair = null;
+        fingerprint = null;
+        sendKey = null;
+        receiveKey = null;
+        context.removeSession(this);
+    }
+
+    private static byte[] getNonce(long counter) {
+        return ByteBuffer.allocate(NONCE_LENGTH).putLong(NONCE_LENGTH - COUNTER_LENGTH, counter).array();
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0)
+                return diff;
+        }
+        return a.length - b.length;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] res = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, res, a.length, b.length);
+        return res;
+    }
+
+    /**
+     * HKDF-SHA256 (RFC 5869) extract and expand.
+     */
+    private static byte[] hkdf(byte[] secret, byte[] salt, byte[] info, int length) throws NoSuchAlgorithmException, InvalidKeyException {
+        Mac mac = CryptoEngines.getMac("HmacSHA256");
+        mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(secret);
+
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        byte[] res = new byte[length];
+        byte[] block = new byte[0];
+        for (int pos = 0, i = 1; pos < length; i++) {
+            mac.update(block);
+            mac.update(info);
+            mac.update((byte) i);
+            block = mac.doFinal();
+            System.arraycopy(block, 0, res, pos, Math.min(block.length, length - pos));
+            pos += block.length;
+        }
+        Arrays.fill(prk, (byte) 0);
+        return res;
+    }
+}
@@ -0,0 +1,219 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Non-cryptographic checksums. CRC32 and Adler-32 come from {@code java.util.zip}; CRC32C and xxHash64 are
+ * implemented here since Java 8 has neither. Every engine reads the incoming buffers in place.
+ */
+public class Checksums {
+
+    public interface Engine {
+        void update(ByteBuffer data);
+
+        /**
+         * @return the checksum as a Lua value: a number for the 32 bits checksums, a hex string for xxHash64.
+         */
+        Object getValue();
+
+        void reset();
+    }
+
+    static Engine create(String algorithm) throws LuaException {
+        switch (algorithm.toLowerCase()) {
+            case "crc32":
+                return new ZipEngine(new CRC32());
+            case "crc32c":
+                return new CRC32C();
+            case "adler32":
+                return new ZipEngine(new Adler32());
+            case "xxhash64":
+                return new XXHash64();
+            default:
+                throw new LuaException("Algorithm must be either crc32, crc32c, adler32 or xxhash64.");
+        }
+    }
+
+    private static final class ZipEngine implements Engine {
+        private final java.util.zip.Checksum checksum;
+
+        private ZipEngine(java.util.zip.Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            if (checksum instanceof CRC32)
+                ((CRC32) checksum).update(data);
+            else
+                ((Adler32) checksum).update(data);
+        }
+
+        @Override
+        public Object getValue() {
+            return checksum.getValue();
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+    }
+
+    private static final class CRC32C implements Engine {
+        // Castagnoli polynomial, reversed
+        private static final int POLYNOMIAL = 0x82F63B78;
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 1) != 0 ? crc >>> 1 ^ POLYNOMIAL : crc >>> 1;
+                }
+                TABLE[i] = crc;
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(ByteBuffer data) {
+            int c = crc;
+            for (int i = data.position(); i < data.limit(); i++) {
+                c = c >>> 8 ^ TABLE[(c ^ data.get(i)) & 0xFF];
+            }
+            crc = c;
+            data.position(data.limit());
+        }
+
+        @Override
+        public Object getValue() {
+            return ~crc & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+
+    private static final class XXHash64 implements Engine {
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+        private static final int STRIPE = 32;
+
+        private final ByteBuffer pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1, v2, v3, v4;
+        private long length;
+
+        private XXHash64() {
+            reset();
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * PRIME2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * PRIME1;
+        }
+
+        private static long merge(long acc, long v) {
+            acc ^= round(0, v);
+            return acc * PRIME1 + PRIME4;
+        }
+
+        private void stripe(ByteBuffer in, int off) {
+            v1 = round(v1, in.getLong(off));
+            v2 = round(v2, in.getLong(off + 8));
+            v3 = round(v3, in.getLong(off + 16));
+            v4 = round(v4, in.getLong(off + 24));
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            ByteOrder order = data.order();
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            int pos = data.position();
+            int limit = data.limit();
+            length += limit - pos;
+
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && pos < limit) {
+                    pending.put(data.get(pos++));
+                }
+                if (pending.hasRemaining()) {
+                    data.position(limit);
+                    data.order(order);
+                    return;
+                }
+                stripe(pending, 0);
+                pending.clear();
+            }
+
+            for (; pos + STRIPE <= limit; pos += STRIPE) {
+                stripe(data, pos);
+            }
+            while (pos < limit) {
+                pending.put(data.get(pos++));
+            }
+            data.position(limit);
+            data.order(order);
+        }
+
+        @Override
+        public Object getValue() {
+            long hash;
+            if (length >= STRIPE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = merge(hash, v1);
+                hash = merge(hash, v2);
+                hash = merge(hash, v3);
+                hash = merge(hash, v4);
+            } else {
+                hash = v3 + PRIME5;
+            }
+            hash += length;
+
+            int end = pending.position();
+            int i = 0;
+            for (; i + 8 <= end; i += 8) {
+                hash ^= round(0, pending.getLong(i));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (i + 4 <= end) {
+                hash ^= (pending.getInt(i) & 0xFFFFFFFFL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                i += 4;
+            }
+            for (; i < end; i++) {
+                hash ^= (pending.get(i) & 0xFF) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return String.format("%016x", hash);
+        }
+
+        @Override
+        public void reset() {
+            v1 = PRIME1 + PRIME2;
+            v2 = PRIME2;
+            v3 = 0;
+            v4 = -PRIME1;
+            length = 0;
+            pending.clear();
+        }
+    }
+}
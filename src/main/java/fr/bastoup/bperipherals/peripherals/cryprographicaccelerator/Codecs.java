@@ -0,0 +1,103 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Text encodings of binary strings. Every encoder computes the exact output size up front and writes straight into
+ * the result array.
+ */
+public class Codecs {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".getBytes();
+    private static final int[] BASE32_VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < BASE32_VALUES.length; i++) {
+            BASE32_VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE32.length; i++) {
+            BASE32_VALUES[BASE32[i]] = i;
+            BASE32_VALUES[Character.toLowerCase(BASE32[i])] = i;
+        }
+    }
+
+    static byte[] encodeHex(ByteBuffer data) {
+        int n = data.remaining();
+        int pos = data.position();
+        byte[] res = new byte[n * 2];
+        for (int i = 0; i < n; i++) {
+            int b = data.get(pos + i) & 0xFF;
+            res[2 * i] = HEX[b >>> 4];
+            res[2 * i + 1] = HEX[b & 0xF];
+        }
+        return res;
+    }
+
+    static byte[] decodeHex(String hex) throws LuaException {
+        int n = hex.length();
+        if (n % 2 != 0)
+            throw new LuaException("This is not a valid hex string.");
+
+        byte[] res = new byte[n / 2];
+        for (int i = 0; i < res.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                throw new LuaException("This is not a valid hex string.");
+            res[i] = (byte) (high << 4 | low);
+        }
+        return res;
+    }
+
+    static byte[] encodeBase32(ByteBuffer data) {
+        int n = data.remaining();
+        int pos = data.position();
+        byte[] res = new byte[(n + 4) / 5 * 8];
+
+        int out = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            buffer = buffer << 8 | (data.get(pos + i) & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                res[out++] = BASE32[(buffer >>> bits) & 0x1F];
+            }
+        }
+        if (bits > 0)
+            res[out++] = BASE32[(buffer << (5 - bits)) & 0x1F];
+        while (out < res.length) {
+            res[out++] = '=';
+        }
+        return res;
+    }
+
+    static byte[] decodeBase32(String base32) throws LuaException {
+        int n = base32.length();
+        while (n > 0 && base32.charAt(n - 1) == '=') {
+            n--;
+        }
+
+        byte[] res = new byte[n * 5 / 8];
+        int out = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            char c = base32.charAt(i);
+            int value = c < 128 ? BASE32_VALUES[c] : -1;
+            if (value < 0)
+                throw new LuaException("This is not a valid base32 string.");
+            buffer = buffer << 5 | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                res[out++] = (byte) (buffer >>> bits);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,95 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import fr.bastoup.bperipherals.util.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket of CPU time, in nanoseconds. Operations are only started while the bucket holds some time, and what
+ * they actually took is charged once they are done, so a single heavy call can leave the bucket in debt. Time is
+ * measured as thread CPU time, so a computer thread waiting on a lock or descheduled isn't charged for it.
+ */
+public class CpuBudget {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean THREAD_CPU_TIME = enableThreadCpuTime();
+
+    private long tokens;
+    private long lastRefill;
+
+    CpuBudget() {
+        this.tokens = getCapacity();
+        this.lastRefill = System.nanoTime();
+    }
+
+    private static boolean enableThreadCpuTime() {
+        try {
+            if (!THREADS.isCurrentThreadCpuTimeSupported())
+                return false;
+            if (!THREADS.isThreadCpuTimeEnabled())
+                THREADS.setThreadCpuTimeEnabled(true);
+            return THREADS.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The CPU time used so far by the current thread, or the wall clock if the JVM can't measure it.
+     */
+    static long currentThreadTime() {
+        return THREAD_CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static long getCapacity() {
+        return Config.CRYPTO_CPU_BUDGET * MILLI;
+    }
+
+    private static boolean isEnabled() {
+        return Config.CRYPTO_CPU_BUDGET > 0;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefill;
+        lastRefill = now;
+        // Refill rate is in milliseconds of CPU time per second
+        tokens = Math.min(getCapacity(), tokens + elapsed / 1000L * Config.CRYPTO_CPU_BUDGET_REFILL);
+    }
+
+    synchronized void check() throws LuaException {
+        if (!isEnabled())
+            return;
+
+        refill();
+        if (tokens <= 0) {
+            long wait = Config.CRYPTO_CPU_BUDGET_REFILL > 0 ? (-tokens / Config.CRYPTO_CPU_BUDGET_REFILL) / 1000L + 1 : -1;
+            throw new LuaException(wait > 0 ? "The CPU budget of this computer is exhausted, try again in " + wait + " ms." :
+                    "The CPU budget of this computer is exhausted.");
+        }
+    }
+
+    synchronized void charge(long nanos) {
+        if (!isEnabled())
+            return;
+
+        refill();
+        tokens -= nanos;
+    }
+
+    synchronized Map<String, Object> getState() {
+        refill();
+        Map<String, Object> res = new HashMap<>();
+        res.put("enabled", isEnabled());
+        res.put("remaining", (double) tokens / MILLI);
+        res.put("capacity", Config.CRYPTO_CPU_BUDGET);
+        res.put("refill", Config.CRYPTO_CPU_BUDGET_REFILL);
+        return res;
+    }
+}
@@ -0,0 +1,109 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import fr.bastoup.bperipherals.util.Config;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the same operation over a list of payloads. Small batches run on the calling computer thread, larger ones are
+ * split over a bounded fork-join pool. Operations are expected to take their engines from {@link CryptoEngines}, so
+ * every worker thread uses its own instances. The CPU time the pool's workers spend is added up, so that it can be
+ * charged to the computer that asked for the batch.
+ */
+public class CryptoBatch {
+
+    private static final int PARALLEL_THRESHOLD = 32;
+
+    private static ForkJoinPool pool = null;
+
+    @FunctionalInterface
+    public interface Operation {
+        byte[] apply(int index, byte[] payload) throws GeneralSecurityException;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != Config.CRYPTO_BATCH_PARALLELISM) {
+            if (pool != null)
+                pool.shutdown();
+            pool = new ForkJoinPool(Config.CRYPTO_BATCH_PARALLELISM);
+        }
+        return pool;
+    }
+
+    /**
+     * @param workerTime Receives the CPU time spent on the pool's threads. Work done on the calling thread isn't
+     *                   counted there.
+     */
+    public static byte[][] run(byte[][] payloads, Operation operation, LongAdder workerTime) throws GeneralSecurityException {
+        byte[][] results = new byte[payloads.length][];
+        if (payloads.length < PARALLEL_THRESHOLD || Config.CRYPTO_BATCH_PARALLELISM <= 1) {
+            for (int i = 0; i < payloads.length; i++) {
+                results[i] = operation.apply(i, payloads[i]);
+            }
+            return results;
+        }
+
+        try {
+            getPool().invoke(new BatchTask(payloads, results, operation, workerTime, 0, payloads.length));
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof GeneralSecurityException)
+                    throw (GeneralSecurityException) cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private static class BatchTask extends RecursiveAction {
+        private final byte[][] payloads;
+        private final byte[][] results;
+        private final Operation operation;
+        private final LongAdder workerTime;
+        private final int from;
+        private final int to;
+
+        private BatchTask(byte[][] payloads, byte[][] results, Operation operation, LongAdder workerTime, int from, int to) {
+            this.payloads = payloads;
+            this.results = results;
+            this.operation = operation;
+            this.workerTime = workerTime;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                // The calling thread may run a task itself, its time is already metered
+                boolean worker = ForkJoinTask.inForkJoinPool();
+                long start = worker ? CpuBudget.currentThreadTime() : 0;
+                try {
+                    for (int i = from; i < to; i++) {
+                        results[i] = operation.apply(i, payloads[i]);
+                    }
+                } catch (GeneralSecurityException e) {
+                    throw new BatchException(e);
+                } finally {
+                    if (worker)
+                        workerTime.add(CpuBudget.currentThreadTime() - start);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(payloads, results, operation, workerTime, from, middle),
+                    new BatchTask(payloads, results, operation, workerTime, middle, to));
+        }
+    }
+
+    private static class BatchException extends RuntimeException {
+        private BatchException(GeneralSecurityException cause) {
+            super(cause);
+        }
+    }
+}
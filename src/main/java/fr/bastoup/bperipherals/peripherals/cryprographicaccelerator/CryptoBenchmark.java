@@ -0,0 +1,381 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import fr.bastoup.bperipherals.util.Config;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Short micro-benchmarks of the accelerator operations, for admins sizing the CPU budget. Each case runs for a bounded
+ * time on a dedicated low priority thread, and only one benchmark can run at a time on the server.
+ */
+public class CryptoBenchmark {
+
+    private static final int[] BULK_SIZES = {64, 1024, 16384};
+    private static final int SMALL_SIZE = 32;
+    private static final int WARMUP_DIVISOR = 5;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "BPeripherals-Benchmark");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final AtomicBoolean RUNNING = new AtomicBoolean(false);
+
+    @FunctionalInterface
+    private interface Operation {
+        void run() throws GeneralSecurityException;
+    }
+
+    @FunctionalInterface
+    private interface LuaOperation {
+        void run() throws LuaException;
+    }
+
+    @FunctionalInterface
+    private interface Setup {
+        Operation create(byte[] payload) throws GeneralSecurityException;
+    }
+
+    public static final class Result {
+        private final String name;
+        private final int size;
+        private final long ops;
+        private final double opsPerSecond;
+
+        private Result(String name, int size, long ops, long nanos) {
+            this.name = name;
+            this.size = size;
+            this.ops = ops;
+            this.opsPerSecond = ops * 1e9 / nanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return opsPerSecond * size / (1024 * 1024);
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> res = new HashMap<>();
+            res.put("name", name);
+            res.put("size", size);
+            res.put("ops", ops);
+            res.put("opsPerSecond", opsPerSecond);
+            res.put("mbPerSecond", getMegabytesPerSecond());
+            return res;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d B): %.0f ops/s, %.2f MB/s", name, size, opsPerSecond, getMegabytesPerSecond());
+        }
+    }
+
+    /**
+     * An executor running one benchmark at a time. It rejects any benchmark submitted while another one is running.
+     */
+    public static final Executor BENCHMARK_EXECUTOR = runnable -> {
+        if (!RUNNING.compareAndSet(false, true))
+            throw new RejectedExecutionException("A benchmark is already running.");
+        try {
+            EXECUTOR.execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    RUNNING.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            RUNNING.set(false);
+            throw e;
+        }
+    };
+
+    /**
+     * Runs every benchmark case on the calling thread.
+     */
+    public static List<Result> run() throws GeneralSecurityException {
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, Setup> entry : getBulkCases().entrySet()) {
+            for (int size : BULK_SIZES) {
+                results.add(measure(entry.getKey(), size, entry.getValue()));
+            }
+        }
+        for (Map.Entry<String, Setup> entry : getEngineCases().entrySet()) {
+            results.add(measure(entry.getKey(), SMALL_SIZE, entry.getValue()));
+        }
+        for (Map.Entry<String, Setup> entry : getAsymmetricCases().entrySet()) {
+            results.add(measure(entry.getKey(), SMALL_SIZE, entry.getValue()));
+        }
+        return results;
+    }
+
+    private static Result measure(String name, int size, Setup setup) throws GeneralSecurityException {
+        byte[] payload = new byte[size];
+        RandomBuffer.get().nextBytes(payload);
+        Operation operation = setup.create(payload);
+
+        long duration = TimeUnit.MILLISECONDS.toNanos(Config.CRYPTO_BENCHMARK_CASE_TIME);
+        long end = System.nanoTime() + duration / WARMUP_DIVISOR;
+        while (System.nanoTime() < end) {
+            operation.run();
+        }
+
+        long ops = 0;
+        long start = System.nanoTime();
+        long now = start;
+        end = start + duration;
+        while (now < end) {
+            operation.run();
+            ops++;
+            now = System.nanoTime();
+        }
+        return new Result(name, size, ops, now - start);
+    }
+
+    private static Map<String, Setup> getBulkCases() {
+        Map<String, Setup> cases = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : new TreeMap<>(PeripheralCryptographicAccelerator.HASH_ALGORITHMS).entrySet()) {
+            String algorithm = entry.getValue();
+            cases.put("hash " + entry.getKey(), payload -> () -> CryptoEngines.getDigest(algorithm).digest(payload));
+        }
+        for (Map.Entry<String, String> entry : new TreeMap<>(PeripheralCryptographicAccelerator.HMAC_ALGORITHMS).entrySet()) {
+            String algorithm = entry.getValue();
+            SecretKeySpec key = new SecretKeySpec(new byte[32], algorithm);
+            cases.put("hmac " + entry.getKey(), payload -> () -> {
+                Mac mac = CryptoEngines.getMac(algorithm);
+                mac.init(key);
+                mac.doFinal(payload);
+            });
+        }
+
+        SecretKeySpec aesKey = new SecretKeySpec(new byte[16], "AES");
+        cases.put("aes cbc", payload -> () -> {
+            Cipher cipher = CryptoEngines.getCipher("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(new byte[16]));
+            cipher.doFinal(payload);
+        });
+        cases.put("aes ctr", payload -> () -> {
+            Cipher cipher = CryptoEngines.getCipher("AES/CTR/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(new byte[16]));
+            cipher.doFinal(payload);
+        });
+        cases.put("aes gcm", payload -> {
+            byte[] iv = new byte[12];
+            return () -> {
+                // GCM refuses to encrypt twice with the same key and iv
+                RandomBuffer.get().nextBytes(iv);
+                Cipher cipher = CryptoEngines.getCipher("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(128, iv));
+                cipher.doFinal(payload);
+            };
+        });
+
+        for (String name : new String[]{"crc32", "crc32c", "adler32", "xxhash64"}) {
+            cases.put("checksum " + name, payload -> lua(() -> {
+                Checksums.Engine engine = Checksums.create(name);
+                engine.update(ByteBuffer.wrap(payload));
+                engine.getValue();
+            }));
+        }
+
+        cases.put("deflate", payload -> {
+            byte[] out = new byte[payload.length * 2 + 64];
+            return () -> {
+                Deflater deflater = new Deflater(6);
+                try {
+                    deflater.setInput(payload);
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        deflater.deflate(out);
+                    }
+                } finally {
+                    deflater.end();
+                }
+            };
+        });
+        cases.put("inflate", payload -> {
+            byte[] compressed = deflate(payload);
+            byte[] out = new byte[payload.length];
+            return () -> {
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(compressed);
+                    while (!inflater.finished()) {
+                        inflater.inflate(out);
+                    }
+                } catch (DataFormatException e) {
+                    throw new GeneralSecurityException(e);
+                } finally {
+                    inflater.end();
+                }
+            };
+        });
+
+        cases.put("base64 encode", payload -> () -> Base64.getEncoder().encode(payload));
+        cases.put("base64 decode", payload -> {
+            String encoded = Base64.getEncoder().encodeToString(payload);
+            return () -> Base64.getDecoder().decode(encoded);
+        });
+        cases.put("hex encode", payload -> () -> Codecs.encodeHex(ByteBuffer.wrap(payload)));
+        cases.put("hex decode", payload -> {
+            String encoded = new String(Codecs.encodeHex(ByteBuffer.wrap(payload)), StandardCharsets.US_ASCII);
+            return lua(() -> Codecs.decodeHex(encoded));
+        });
+        cases.put("base32 encode", payload -> () -> Codecs.encodeBase32(ByteBuffer.wrap(payload)));
+        cases.put("base32 decode", payload -> {
+            String encoded = new String(Codecs.encodeBase32(ByteBuffer.wrap(payload)), StandardCharsets.US_ASCII);
+            return lua(() -> Codecs.decodeBase32(encoded));
+        });
+
+        cases.put("xor bytes", payload -> {
+            byte[] other = payload.clone();
+            return lua(() -> Bitwise.combine(ByteBuffer.wrap(payload), ByteBuffer.wrap(other), (a, b) -> a ^ b));
+        });
+        cases.put("rotate bytes", payload -> () -> Bitwise.rotate(ByteBuffer.wrap(payload), 3));
+
+        cases.put("random bytes", payload -> () -> RandomBuffer.get().nextBytes(payload));
+        return cases;
+    }
+
+    private static Operation lua(LuaOperation operation) {
+        return () -> {
+            try {
+                operation.run();
+            } catch (LuaException e) {
+                throw new GeneralSecurityException(e.getMessage());
+            }
+        };
+    }
+
+    private static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(6);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 64);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Small calls through the cached engines next to the same calls looking the engine up every time, which is
+     * what the accelerator did before the engines were cached.
+     */
+    private static Map<String, Setup> getEngineCases() {
+        Map<String, Setup> cases = new LinkedHashMap<>();
+        cases.put("hash sha512 cached engine", payload -> () -> CryptoEngines.getDigest("SHA-512").digest(payload));
+        cases.put("hash sha512 new engine", payload -> () -> MessageDigest.getInstance("SHA-512").digest(payload));
+
+        SecretKeySpec hmacKey = new SecretKeySpec(new byte[32], "HmacSHA512");
+        cases.put("hmac sha512 cached engine", payload -> () -> {
+            Mac mac = CryptoEngines.getMac("HmacSHA512");
+            mac.init(hmacKey);
+            mac.doFinal(payload);
+        });
+        cases.put("hmac sha512 new engine", payload -> () -> {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(hmacKey);
+            mac.doFinal(payload);
+        });
+
+        SecretKeySpec aesKey = new SecretKeySpec(new byte[16], "AES");
+        cases.put("aes cbc cached engine", payload -> () -> {
+            Cipher cipher = CryptoEngines.getCipher("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(new byte[16]));
+            cipher.doFinal(payload);
+        });
+        cases.put("aes cbc new engine", payload -> () -> {
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(new byte[16]));
+            cipher.doFinal(payload);
+        });
+
+        cases.put("random bytes shared random", payload -> () -> CryptoEngines.getRandom().nextBytes(payload));
+        cases.put("random bytes new random", payload -> () -> new SecureRandom().nextBytes(payload));
+        return cases;
+    }
+
+    private static Map<String, Setup> getAsymmetricCases() throws GeneralSecurityException {
+        Map<String, Setup> cases = new LinkedHashMap<>();
+        KeyPairGenerator rsaGen = KeyPairGenerator.getInstance("RSA");
+        rsaGen.initialize(1024, CryptoEngines.getRandom());
+        KeyPair rsa = rsaGen.generateKeyPair();
+        cases.put("rsa 1024 encrypt", payload -> {
+            Cipher cipher = Cipher.getInstance("RSA");
+            cipher.init(Cipher.ENCRYPT_MODE, rsa.getPublic());
+            return () -> cipher.doFinal(payload);
+        });
+        cases.put("rsa 1024 decrypt", payload -> {
+            Cipher encrypt = Cipher.getInstance("RSA");
+            encrypt.init(Cipher.ENCRYPT_MODE, rsa.getPublic());
+            byte[] encrypted = encrypt.doFinal(payload);
+            Cipher cipher = Cipher.getInstance("RSA");
+            cipher.init(Cipher.DECRYPT_MODE, rsa.getPrivate());
+            return () -> cipher.doFinal(encrypted);
+        });
+
+        KeyPairGenerator ecGen = KeyPairGenerator.getInstance("EC");
+        ecGen.initialize(new ECGenParameterSpec("secp256r1"), CryptoEngines.getRandom());
+        KeyPair ec = ecGen.generateKeyPair();
+        KeyPair peer = ecGen.generateKeyPair();
+        cases.put("ecdsa p256 sign", payload -> () -> {
+            Signature signature = CryptoEngines.getSignature("SHA256withECDSA");
+            signature.initSign(ec.getPrivate(), CryptoEngines.getRandom());
+            signature.update(payload);
+            signature.sign();
+        });
+        cases.put("ecdsa p256 verify", payload -> {
+            Signature signer = Signature.getInstance("SHA256withECDSA");
+            signer.initSign(ec.getPrivate(), CryptoEngines.getRandom());
+            signer.update(payload);
+            byte[] signed = signer.sign();
+            return () -> {
+                Signature verifier = CryptoEngines.getSignature("SHA256withECDSA");
+                verifier.initVerify(ec.getPublic());
+                verifier.update(payload);
+                verifier.verify(signed);
+            };
+        });
+        cases.put("ecdh p256", payload -> () -> {
+            KeyAgreement agreement = CryptoEngines.getKeyAgreement("ECDH");
+            agreement.init(ec.getPrivate());
+            agreement.doPhase(peer.getPublic(), true);
+            agreement.generateSecret();
+        });
+        cases.put("pbkdf2 sha256 1000 iterations", payload -> () -> {
+            try {
+                PasswordHasher.hash(payload, "sha256", 1000);
+            } catch (LuaException e) {
+                throw new GeneralSecurityException(e.getMessage());
+            }
+        });
+        return cases;
+    }
+}
@@ -0,0 +1,97 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import javax.crypto.*;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the JCA engines used by the cryptographic accelerator. Looking an engine up through the providers is much
+ * more expensive than the operation itself on small inputs, so every computer thread keeps its own instances.
+ * Engines are not thread-safe: the returned instances must not escape the calling thread.
+ */
+public class CryptoEngines {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Mac>> MACS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, KeyAgreement>> KEY_AGREEMENTS = ThreadLocal.withInitial(HashMap::new);
+
+    static {
+        // Seed now rather than on the first call of a computer.
+        RANDOM.nextBytes(new byte[1]);
+    }
+
+    public static SecureRandom getRandom() {
+        return RANDOM;
+    }
+
+    public static MessageDigest getDigest(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest md = digests.get(algorithm);
+        if (md == null) {
+            md = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, md);
+        } else {
+            md.reset();
+        }
+        return md;
+    }
+
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Mac> macs = MACS.get();
+        Mac mac = macs.get(algorithm);
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm);
+            macs.put(algorithm, mac);
+        }
+        return mac;
+    }
+
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+
+    public static Signature getSignature(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    public static KeyAgreement getKeyAgreement(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, KeyAgreement> agreements = KEY_AGREEMENTS.get();
+        KeyAgreement agreement = agreements.get(algorithm);
+        if (agreement == null) {
+            agreement = KeyAgreement.getInstance(algorithm);
+            agreements.put(algorithm, agreement);
+        }
+        return agreement;
+    }
+
+    /**
+     * Runs the final step of a cipher straight from the Lua argument buffer, without copying the input first.
+     */
+    public static byte[] doFinal(Cipher cipher, ByteBuffer data) throws IllegalBlockSizeException, BadPaddingException, ShortBufferException {
+        ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(data.remaining()));
+        cipher.doFinal(data, out);
+        return out.position() == out.capacity() ? out.array() : Arrays.copyOf(out.array(), out.position());
+    }
+}
@@ -0,0 +1,119 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import dan200.computercraft.api.lua.LuaException;
+import fr.bastoup.bperipherals.util.Config;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PBKDF2 password hashing. Hashes are encoded as {@code $pbkdf2-<digest>$<iterations>$<salt>$<hash>}, with the salt
+ * and hash in base64, so that verification doesn't need anything but the encoded string. The work runs on a
+ * dedicated pool so a computer hashing passwords never holds a computer thread.
+ * <p>
+ * PBKDF2 is computed over the raw bytes of the Lua string, as RFC 8018 specifies, rather than through
+ * {@code PBEKeySpec} which takes chars and UTF-8 encodes them again. Hashes match other PBKDF2 implementations
+ * given the same bytes.
+ */
+public class PasswordHasher {
+
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static ExecutorService executor = null;
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(Config.PASSWORD_HASH_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "BPeripherals-Password-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    static void checkIterations(int iterations) throws LuaException {
+        if (iterations < 1 || iterations > Config.MAX_PBKDF2_ITERATIONS)
+            throw new LuaException("Iterations must be between 1 and " + Config.MAX_PBKDF2_ITERATIONS);
+    }
+
+    static String getAlgorithm(String digest) throws LuaException {
+        switch (digest.toLowerCase()) {
+            case "sha256":
+                return "HmacSHA256";
+            case "sha512":
+                return "HmacSHA512";
+            default:
+                throw new LuaException("Algorithm must be either sha256 or sha512.");
+        }
+    }
+
+    private static byte[] pbkdf2(String algorithm, byte[] password, byte[] salt, int iterations, int length) throws GeneralSecurityException {
+        Mac mac = CryptoEngines.getMac(algorithm);
+        // HMAC pads its key with zeros, so an empty password is the same key as a single zero byte, which
+        // SecretKeySpec accepts
+        mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, algorithm));
+
+        int macLength = mac.getMacLength();
+        byte[] result = new byte[length];
+        byte[] u = new byte[macLength];
+        byte[] t = new byte[macLength];
+        for (int block = 1, offset = 0; offset < length; block++, offset += macLength) {
+            mac.update(salt);
+            mac.update(new byte[]{(byte) (block >>> 24), (byte) (block >>> 16), (byte) (block >>> 8), (byte) block});
+            mac.doFinal(u, 0);
+            System.arraycopy(u, 0, t, 0, macLength);
+            for (int i = 1; i < iterations; i++) {
+                mac.update(u);
+                mac.doFinal(u, 0);
+                for (int j = 0; j < macLength; j++) {
+                    t[j] ^= u[j];
+                }
+            }
+            System.arraycopy(t, 0, result, offset, Math.min(macLength, length - offset));
+        }
+        return result;
+    }
+
+    static String hash(byte[] password, String digest, int iterations) throws LuaException, GeneralSecurityException {
+        byte[] salt = new byte[SALT_LENGTH];
+        RandomBuffer.get().nextBytes(salt);
+        byte[] hash = pbkdf2(getAlgorithm(digest), password, salt, iterations, HASH_LENGTH);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return "$pbkdf2-" + digest.toLowerCase() + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    static boolean verify(byte[] password, String encoded) throws LuaException, GeneralSecurityException {
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 5 || !parts[0].isEmpty() || !parts[1].startsWith("pbkdf2-"))
+            throw new LuaException("This is not a valid password hash.");
+
+        String algorithm = getAlgorithm(parts[1].substring("pbkdf2-".length()));
+        int iterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            iterations = Integer.parseInt(parts[2]);
+            salt = Base64.getDecoder().decode(parts[3]);
+            expected = Base64.getDecoder().decode(parts[4]);
+        } catch (IllegalArgumentException e) {
+            throw new LuaException("This is not a valid password hash.");
+        }
+        checkIterations(iterations);
+        // Only hashes made by hash() are accepted, a longer hash would make pbkdf2 compute more blocks
+        if (salt.length != SALT_LENGTH || expected.length != HASH_LENGTH)
+            throw new LuaException("This is not a valid password hash.");
+
+        return MessageDigest.isEqual(expected, pbkdf2(algorithm, password, salt, iterations, expected.length));
+    }
+}
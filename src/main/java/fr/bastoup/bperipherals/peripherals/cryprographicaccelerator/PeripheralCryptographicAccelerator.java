@@ -1,8 +1,12 @@
 package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
 
+import dan200.computercraft.api.lua.IArguments;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.lua.LuaFunction;
+import dan200.computercraft.api.lua.MethodResult;
+import dan200.computercraft.api.peripheral.IComputerAccess;
 import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.api.peripheral.NotAttachedException;
 import fr.bastoup.bperipherals.util.Config;
 import fr.bastoup.bperipherals.util.Util;
 import fr.bastoup.bperipherals.util.peripherals.BPeripheral;
@@ -10,21 +14,50 @@ import fr.bastoup.bperipherals.util.peripherals.BPeripheral;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PeripheralCryptographicAccelerator extends BPeripheral {
 
     public static final String TYPE = "cryptographic_accelerator";
 
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final String EC_CURVE = "secp256r1";
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long MAX_RANDOM_RANGE = 1L << 53;
+    private static final String TOKEN_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    static final Map<String, String> HASH_ALGORITHMS = new HashMap<>();
+    static final Map<String, String> HMAC_ALGORITHMS = new HashMap<>();
+    private static final Map<String, String> CIPHER_MODES = new HashMap<>();
+
+    static {
+        HASH_ALGORITHMS.put("md5", "MD5");
+        HASH_ALGORITHMS.put("sha1", "SHA-1");
+        HASH_ALGORITHMS.put("sha256", "SHA-256");
+        HASH_ALGORITHMS.put("sha512", "SHA-512");
+
+        HMAC_ALGORITHMS.put("md5", "HmacMD5");
+        HMAC_ALGORITHMS.put("sha1", "HmacSHA1");
+        HMAC_ALGORITHMS.put("sha256", "HmacSHA256");
+        HMAC_ALGORITHMS.put("sha512", "HmacSHA512");
+
+        CIPHER_MODES.put("cbc", "AES/CBC/PKCS5Padding");
+        CIPHER_MODES.put("ctr", "AES/CTR/NoPadding");
+        CIPHER_MODES.put("gcm", "AES/GCM/NoPadding");
+    }
+
+    private final Map<IComputerAccess, AcceleratorContext> contexts = new ConcurrentHashMap<>();
 
     public PeripheralCryptographicAccelerator(TileCryptographicAccelerator tile) {
         super(tile);
@@ -41,40 +74,209 @@ public class PeripheralCryptographicAccelerator extends BPeripheral {
         return this == other || other instanceof PeripheralCryptographicAccelerator && ((PeripheralCryptographicAccelerator) other).tile == tile;
     }
 
+    @Override
+    public void attach(@Nonnull IComputerAccess computer) {
+        super.attach(computer);
+        contexts.put(computer, new AcceleratorContext());
+        RSAKeyPool.refill();
+    }
+
+    @Override
+    public void detach(@Nonnull IComputerAccess computer) {
+        AcceleratorContext context = contexts.remove(computer);
+        if (context != null)
+            context.close();
+        super.detach(computer);
+    }
+
+    AcceleratorContext getContext(IComputerAccess computer) throws LuaException {
+        AcceleratorContext context = contexts.get(computer);
+        if (context == null)
+            throw new LuaException("The peripheral is not attached.");
+        return context;
+    }
+
+    @LuaFunction
+    public final Map<String, Object> getCpuBudget(IComputerAccess computer) throws LuaException {
+        return getContext(computer).getBudget().getState();
+    }
+
+    static String getHashAlgorithm(String name) throws LuaException {
+        String algorithm = HASH_ALGORITHMS.get(name.toLowerCase());
+        if (algorithm == null)
+            throw new LuaException("Algorithm must be either md5, sha1, sha256 or sha512.");
+        return algorithm;
+    }
+
+    static String getHmacAlgorithm(String name) throws LuaException {
+        String algorithm = HMAC_ALGORITHMS.get(name.toLowerCase());
+        if (algorithm == null)
+            throw new LuaException("Algorithm must be either md5, sha1, sha256 or sha512.");
+        return algorithm;
+    }
+
     @LuaFunction
-    public final byte[] randomBytes(int length) throws LuaException {
+    public final byte[] randomBytes(IComputerAccess computer, int length) throws LuaException {
+        return getContext(computer).metered(() -> {
+            checkRandomLength(length);
+            byte[] res = new byte[length];
+            RandomBuffer.get().nextBytes(res);
+            return res;
+        });
+    }
+
+    private static void checkRandomLength(int length) throws LuaException {
         if (0 >= length || length > Config.MAX_RANDOM_BYTES_SIZE)
             throw new LuaException("Length must be between 1 and " + Config.MAX_RANDOM_BYTES_SIZE);
-        byte[] res = new byte[length];
-        new SecureRandom().nextBytes(res);
-        return res;
     }
 
     @LuaFunction
-    public final byte[] decodeBase64(String base64) throws LuaException {
-        try {
-            return Base64.getDecoder().decode(base64);
-        } catch (IllegalArgumentException e) {
-            throw new LuaException("This is not a valid base64 string.");
-        }
+    public final List<byte[]> randomBytesMany(IComputerAccess computer, int count, int length) throws LuaException {
+        return getContext(computer).metered(() -> {
+            checkRandomLength(length);
+            if (0 >= count || count > Config.MAX_CRYPTO_BATCH_SIZE)
+                throw new LuaException("Count must be between 1 and " + Config.MAX_CRYPTO_BATCH_SIZE);
+            RandomBuffer random = RandomBuffer.get();
+            List<byte[]> res = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[length];
+                random.nextBytes(bytes);
+                res.add(bytes);
+            }
+            return res;
+        });
+    }
+
+    @LuaFunction
+    public final long randomInt(IComputerAccess computer, long min, long max) throws LuaException {
+        if (min > max)
+            throw new LuaException("The minimum must not be greater than the maximum.");
+        long range = max - min + 1;
+        if (range <= 0 || range > MAX_RANDOM_RANGE)
+            throw new LuaException("The range must not contain more than 2^53 values.");
+        return getContext(computer).metered(() -> min + RandomBuffer.get().nextLong(range));
+    }
+
+    @LuaFunction
+    public final String randomUUID(IComputerAccess computer) throws LuaException {
+        return getContext(computer).metered(() -> {
+            byte[] bytes = new byte[16];
+            RandomBuffer.get().nextBytes(bytes);
+            bytes[6] = (byte) (bytes[6] & 0x0F | 0x40);
+            bytes[8] = (byte) (bytes[8] & 0x3F | 0x80);
+            byte[] hex = Codecs.encodeHex(ByteBuffer.wrap(bytes));
+            return new String(hex, 0, 8, StandardCharsets.US_ASCII) + "-" + new String(hex, 8, 4, StandardCharsets.US_ASCII) + "-" +
+                    new String(hex, 12, 4, StandardCharsets.US_ASCII) + "-" + new String(hex, 16, 4, StandardCharsets.US_ASCII) + "-" +
+                    new String(hex, 20, 12, StandardCharsets.US_ASCII);
+        });
+    }
+
+    @LuaFunction
+    public final byte[] randomToken(IComputerAccess computer, int length, Optional<String> alphabet) throws LuaException {
+        byte[] chars = alphabet.orElse(TOKEN_ALPHABET).getBytes(StandardCharsets.ISO_8859_1);
+        if (chars.length < 2 || chars.length > 256)
+            throw new LuaException("The alphabet must contain between 2 and 256 characters.");
+        checkRandomLength(length);
+        return getContext(computer).metered(() -> {
+            // Bytes over the last multiple of the alphabet size are rejected to keep every character equally likely
+            int limit = 256 - 256 % chars.length;
+            RandomBuffer random = RandomBuffer.get();
+            byte[] res = new byte[length];
+            for (int i = 0; i < length; i++) {
+                int b;
+                do {
+                    b = random.nextByte();
+                } while (b >= limit);
+                res[i] = chars[b % chars.length];
+            }
+            return res;
+        });
+    }
+
+    @LuaFunction
+    public final byte[] decodeBase64(IComputerAccess computer, String base64) throws LuaException {
+        return getContext(computer).metered(() -> {
+            try {
+                return Base64.getDecoder().decode(base64);
+            } catch (IllegalArgumentException e) {
+                throw new LuaException("This is not a valid base64 string.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final byte[] encodeBase64(IComputerAccess computer, ByteBuffer str) throws LuaException {
+        return getContext(computer).metered(() -> Base64.getEncoder().encode(str).array());
+    }
+
+    @LuaFunction
+    public final byte[] decodeBase64Url(IComputerAccess computer, String base64) throws LuaException {
+        return getContext(computer).metered(() -> {
+            try {
+                return Base64.getUrlDecoder().decode(base64);
+            } catch (IllegalArgumentException e) {
+                throw new LuaException("This is not a valid base64url string.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final byte[] encodeBase64Url(IComputerAccess computer, ByteBuffer str, Optional<Boolean> padding) throws LuaException {
+        Base64.Encoder encoder = padding.orElse(false) ? Base64.getUrlEncoder() : Base64.getUrlEncoder().withoutPadding();
+        return getContext(computer).metered(() -> encoder.encode(str).array());
+    }
+
+    @LuaFunction
+    public final byte[] encodeHex(IComputerAccess computer, ByteBuffer data) throws LuaException {
+        return getContext(computer).metered(() -> Codecs.encodeHex(data));
+    }
+
+    @LuaFunction
+    public final byte[] decodeHex(IComputerAccess computer, String hex) throws LuaException {
+        return getContext(computer).metered(() -> Codecs.decodeHex(hex));
+    }
+
+    @LuaFunction
+    public final byte[] encodeBase32(IComputerAccess computer, ByteBuffer data) throws LuaException {
+        return getContext(computer).metered(() -> Codecs.encodeBase32(data));
+    }
+
+    @LuaFunction
+    public final byte[] decodeBase32(IComputerAccess computer, String base32) throws LuaException {
+        return getContext(computer).metered(() -> Codecs.decodeBase32(base32));
+    }
+
+    @LuaFunction
+    public final byte[] pack(IComputerAccess computer, IArguments args) throws LuaException {
+        BinaryFormat format = BinaryFormat.parse(args.getString(0));
+        return getContext(computer).metered(() -> format.pack(args, 1));
     }
 
     @LuaFunction
-    public final String encodeBase64(ByteBuffer str) {
-        byte[] strArray = Util.getByteBufferArray(str);
-        return new String(Base64.getEncoder().encode(strArray));
+    public final MethodResult unpack(IComputerAccess computer, String format, ByteBuffer data, Optional<Integer> position) throws LuaException {
+        BinaryFormat binaryFormat = BinaryFormat.parse(format);
+        return MethodResult.of(getContext(computer).metered(() -> binaryFormat.unpack(data, position.orElse(1))));
     }
 
     @LuaFunction
-    public final byte[] encryptAES(ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+    public final byte[] encryptAES(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+        return getContext(computer).metered(() -> aesCBC(Cipher.ENCRYPT_MODE, data, key, iv));
+    }
+
+    @LuaFunction
+    public final byte[] decryptAES(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+        return getContext(computer).metered(() -> aesCBC(Cipher.DECRYPT_MODE, data, key, iv));
+    }
+
+    private byte[] aesCBC(int mode, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
         byte[] keyArray = Util.getByteBufferArray(key);
         byte[] ivArray = Util.getByteBufferArray(iv);
         byte[] dataArray = Util.getByteBufferArray(data);
         SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "AES");
         IvParameterSpec ivSpec = new IvParameterSpec(ivArray);
         try {
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivSpec);
+            Cipher cipher = CryptoEngines.getCipher("AES/CBC/PKCS5Padding");
+            cipher.init(mode, secretKeySpec, ivSpec);
             return cipher.doFinal(dataArray);
         } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
             throw new LuaException(e.getMessage());
@@ -85,95 +287,331 @@ public class PeripheralCryptographicAccelerator extends BPeripheral {
     }
 
     @LuaFunction
-    public final byte[] decryptAES(ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+    public final byte[] encryptAESGCM(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv, Optional<ByteBuffer> aad) throws LuaException {
+        return getContext(computer).metered(() -> aesGCM(Cipher.ENCRYPT_MODE, data, key, iv, aad));
+    }
+
+    @LuaFunction
+    public final byte[] decryptAESGCM(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv, Optional<ByteBuffer> aad) throws LuaException {
+        return getContext(computer).metered(() -> aesGCM(Cipher.DECRYPT_MODE, data, key, iv, aad));
+    }
+
+    private byte[] aesGCM(int mode, ByteBuffer data, ByteBuffer key, ByteBuffer iv, Optional<ByteBuffer> aad) throws LuaException {
         byte[] keyArray = Util.getByteBufferArray(key);
         byte[] ivArray = Util.getByteBufferArray(iv);
-        byte[] dataArray = Util.getByteBufferArray(data);
-        SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "AES");
-        IvParameterSpec ivSpec = new IvParameterSpec(ivArray);
         try {
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivSpec);
-            return cipher.doFinal(dataArray);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            Cipher cipher = CryptoEngines.getCipher("AES/GCM/NoPadding");
+            cipher.init(mode, new SecretKeySpec(keyArray, "AES"), new GCMParameterSpec(GCM_TAG_LENGTH, ivArray));
+            if (aad.isPresent())
+                cipher.updateAAD(aad.get());
+            return CryptoEngines.doFinal(cipher, data);
+        } catch (AEADBadTagException e) {
+            throw new LuaException("Authentication failed, the data or its additional data has been tampered with.");
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException e) {
             throw new LuaException(e.getMessage());
-        } catch (NoSuchAlgorithmException | IllegalBlockSizeException | BadPaddingException | NoSuchPaddingException e) {
+        } catch (NoSuchAlgorithmException | BadPaddingException | NoSuchPaddingException | ShortBufferException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
         }
     }
 
     @LuaFunction
-    public final Map<String, byte[]> generateRSAKeys(int keySize) throws LuaException {
-        if (512 > keySize || keySize > 1024)
-            throw new LuaException("Key size must be between 512 and 1024");
+    public final byte[] encryptAESCTR(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+        return getContext(computer).metered(() -> aesCTR(Cipher.ENCRYPT_MODE, data, key, iv));
+    }
+
+    @LuaFunction
+    public final byte[] decryptAESCTR(IComputerAccess computer, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+        return getContext(computer).metered(() -> aesCTR(Cipher.DECRYPT_MODE, data, key, iv));
+    }
+
+    private byte[] aesCTR(int mode, ByteBuffer data, ByteBuffer key, ByteBuffer iv) throws LuaException {
+        byte[] keyArray = Util.getByteBufferArray(key);
+        byte[] ivArray = Util.getByteBufferArray(iv);
         try {
-            KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
-            kpGen.initialize(keySize);
-            KeyPair kp = kpGen.generateKeyPair();
-            Map<String, byte[]> res = new HashMap<>();
-            res.put("public", kp.getPublic().getEncoded());
-            res.put("private", kp.getPrivate().getEncoded());
-            return res;
-        } catch (NoSuchAlgorithmException e) {
+            Cipher cipher = CryptoEngines.getCipher("AES/CTR/NoPadding");
+            cipher.init(mode, new SecretKeySpec(keyArray, "AES"), new IvParameterSpec(ivArray));
+            return CryptoEngines.doFinal(cipher, data);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new LuaException(e.getMessage());
+        } catch (NoSuchAlgorithmException | IllegalBlockSizeException | BadPaddingException | NoSuchPaddingException | ShortBufferException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
         }
+    }
 
+    @LuaFunction
+    public final Map<String, byte[]> generateRSAKeys(IComputerAccess computer, int keySize) throws LuaException {
+        return getContext(computer).metered(() -> {
+            if (512 > keySize || keySize > 1024)
+                throw new LuaException("Key size must be between 512 and 1024");
+            try {
+                KeyPair kp = RSAKeyPool.generate(keySize);
+                Map<String, byte[]> res = new HashMap<>();
+                res.put("public", kp.getPublic().getEncoded());
+                res.put("private", kp.getPrivate().getEncoded());
+                return res;
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
     }
 
     @LuaFunction
-    public final byte[] encryptRSA(ByteBuffer data, ByteBuffer publicKey) throws LuaException {
-        byte[] publicKeyArray = Util.getByteBufferArray(publicKey);
-        byte[] dataArray = Util.getByteBufferArray(data);
+    public final int generateRSAKeysAsync(IComputerAccess computer, int keySize) throws LuaException {
+        if (512 > keySize || keySize > 1024)
+            throw new LuaException("Key size must be between 512 and 1024");
+        AcceleratorContext context = getContext(computer);
+        context.getBudget().check();
+        int id = context.nextTaskId();
+        boolean queued = RSAKeyPool.generateAsync(keySize, (kp, time) -> {
+            context.getBudget().charge(time);
+            if (context.isClosed())
+                return;
+            try {
+                computer.queueEvent("rsa_keys_generated", computer.getAttachmentName(), id,
+                        kp.getPublic().getEncoded(), kp.getPrivate().getEncoded());
+            } catch (NotAttachedException ignore) {
+            }
+        });
+        if (!queued)
+            throw new LuaException("Too many key generations are pending, try again later.");
+        return id;
+    }
+
+    @LuaFunction
+    public final byte[] encryptRSA(IComputerAccess computer, ByteBuffer data, ByteBuffer publicKey) throws LuaException {
+        return getContext(computer).metered(() -> importKey(computer, publicKey, "RSA", false).encrypt(data));
+    }
+
+    @LuaFunction
+    public final byte[] decryptRSA(IComputerAccess computer, ByteBuffer data, ByteBuffer privateKey) throws LuaException {
+        return getContext(computer).metered(() -> importKey(computer, privateKey, "RSA", true).decrypt(data));
+    }
+
+    @LuaFunction
+    public final CCKey importPublicKey(IComputerAccess computer, ByteBuffer publicKey) throws LuaException {
+        return getContext(computer).metered(() -> importHandle(computer, publicKey, "RSA", false));
+    }
+
+    @LuaFunction
+    public final CCKey importPrivateKey(IComputerAccess computer, ByteBuffer privateKey) throws LuaException {
+        return getContext(computer).metered(() -> importHandle(computer, privateKey, "RSA", true));
+    }
+
+    private CCKey importKey(IComputerAccess computer, ByteBuffer key, String algorithm, boolean isPrivate) throws LuaException {
+        byte[] keyArray = Util.getByteBufferArray(key);
         try {
-            PublicKey key = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(publicKeyArray));
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            return cipher.doFinal(dataArray);
-        } catch (InvalidKeyException e) {
+            return getContext(computer).getKey(algorithm, isPrivate, keyArray);
+        } catch (InvalidKeyException | InvalidKeySpecException e) {
             throw new LuaException(e.getMessage());
-        } catch (NoSuchAlgorithmException | IllegalBlockSizeException | BadPaddingException | NoSuchPaddingException | InvalidKeySpecException e) {
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
         }
     }
 
-    @LuaFunction
-    public final byte[] decryptRSA(ByteBuffer data, ByteBuffer privateKey) throws LuaException {
-        byte[] privateKeyArray = Util.getByteBufferArray(privateKey);
-        byte[] dataArray = Util.getByteBufferArray(data);
+    private CCKey importHandle(IComputerAccess computer, ByteBuffer key, String algorithm, boolean isPrivate) throws LuaException {
+        byte[] keyArray = Util.getByteBufferArray(key);
         try {
-            PrivateKey key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(privateKeyArray));
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            return cipher.doFinal(dataArray);
-        } catch (InvalidKeyException e) {
+            return getContext(computer).createHandle(algorithm, isPrivate, keyArray);
+        } catch (InvalidKeyException | InvalidKeySpecException e) {
             throw new LuaException(e.getMessage());
-        } catch (NoSuchAlgorithmException | IllegalBlockSizeException | BadPaddingException | NoSuchPaddingException | InvalidKeySpecException e) {
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
         }
     }
 
     @LuaFunction
-    public final byte[] hashMD5(ByteBuffer data) throws LuaException {
-        byte[] dataArray = Util.getByteBufferArray(data);
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            return md.digest(dataArray);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            throw new LuaException("Internal error, check the logs for more info.");
-        }
+    public final Map<String, byte[]> generateECKeys(IComputerAccess computer) throws LuaException {
+        return getContext(computer).metered(() -> {
+            try {
+                KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC");
+                kpGen.initialize(new ECGenParameterSpec(EC_CURVE), CryptoEngines.getRandom());
+                KeyPair kp = kpGen.generateKeyPair();
+                Map<String, byte[]> res = new HashMap<>();
+                res.put("public", kp.getPublic().getEncoded());
+                res.put("private", kp.getPrivate().getEncoded());
+                return res;
+            } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
     }
 
     @LuaFunction
-    public final byte[] hashSHA512(ByteBuffer data) throws LuaException {
-        byte[] dataArray = Util.getByteBufferArray(data);
+    public final byte[] signECDSA(IComputerAccess computer, ByteBuffer data, ByteBuffer privateKey) throws LuaException {
+        return getContext(computer).metered(() -> {
+            PrivateKey key = (PrivateKey) importKey(computer, privateKey, "EC", true).getKey();
+            try {
+                Signature signature = CryptoEngines.getSignature("SHA256withECDSA");
+                signature.initSign(key, CryptoEngines.getRandom());
+                signature.update(data);
+                return signature.sign();
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            } catch (NoSuchAlgorithmException | SignatureException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final boolean verifyECDSA(IComputerAccess computer, ByteBuffer data, ByteBuffer signature, ByteBuffer publicKey) throws LuaException {
+        return getContext(computer).metered(() -> {
+            PublicKey key = (PublicKey) importKey(computer, publicKey, "EC", false).getKey();
+            byte[] signatureArray = Util.getByteBufferArray(signature);
+            try {
+                Signature verifier = CryptoEngines.getSignature("SHA256withECDSA");
+                verifier.initVerify(key);
+                verifier.update(data);
+                return verifier.verify(signatureArray);
+            } catch (SignatureException e) {
+                // Malformed signature
+                return false;
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final byte[] deriveECDH(IComputerAccess computer, ByteBuffer privateKey, ByteBuffer publicKey) throws LuaException {
+        return getContext(computer).metered(() -> {
+            PrivateKey ownKey = (PrivateKey) importKey(computer, privateKey, "EC", true).getKey();
+            PublicKey peerKey = (PublicKey) importKey(computer, publicKey, "EC", false).getKey();
+            try {
+                KeyAgreement agreement = CryptoEngines.getKeyAgreement("ECDH");
+                agreement.init(ownKey);
+                agreement.doPhase(peerKey, true);
+                return agreement.generateSecret();
+            } catch (InvalidKeyException | IllegalStateException e) {
+                throw new LuaException(e.getMessage());
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final MethodResult hashPassword(IComputerAccess computer, ByteBuffer password, Optional<Integer> iterations, Optional<String> algorithm) throws LuaException {
+        int iter = iterations.orElse(Config.DEFAULT_PBKDF2_ITERATIONS);
+        PasswordHasher.checkIterations(iter);
+        String digest = algorithm.orElse("sha256");
+        PasswordHasher.getAlgorithm(digest);
+        byte[] passwordArray = Util.getByteBufferArray(password);
+
+        AcceleratorContext context = getContext(computer);
+        context.startPasswordHash();
+        return AcceleratorTask.submit(computer, context, PasswordHasher.getExecutor(),
+                () -> PasswordHasher.hash(passwordArray, digest, iter), context::endPasswordHash);
+    }
+
+    @LuaFunction
+    public final MethodResult verifyPassword(IComputerAccess computer, ByteBuffer password, String hash) throws LuaException {
+        byte[] passwordArray = Util.getByteBufferArray(password);
+
+        AcceleratorContext context = getContext(computer);
+        context.startPasswordHash();
+        return AcceleratorTask.submit(computer, context, PasswordHasher.getExecutor(),
+                () -> PasswordHasher.verify(passwordArray, hash), context::endPasswordHash);
+    }
+
+    @LuaFunction
+    public final MethodResult benchmark(IComputerAccess computer) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        return AcceleratorTask.submit(computer, context, CryptoBenchmark.BENCHMARK_EXECUTOR, () -> {
+            List<Map<String, Object>> res = new ArrayList<>();
+            for (CryptoBenchmark.Result result : CryptoBenchmark.run()) {
+                res.add(result.toMap());
+            }
+            return res;
+        }, () -> {
+        }, "A benchmark is already running, try again later.");
+    }
+
+    @LuaFunction
+    public final byte[] hashMD5(IComputerAccess computer, ByteBuffer data) throws LuaException {
+        return getContext(computer).metered(() -> {
+            byte[] dataArray = Util.getByteBufferArray(data);
+            try {
+                MessageDigest md = CryptoEngines.getDigest("MD5");
+                return md.digest(dataArray);
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final byte[] hashSHA512(IComputerAccess computer, ByteBuffer data) throws LuaException {
+        return getContext(computer).metered(() -> {
+            byte[] dataArray = Util.getByteBufferArray(data);
+            try {
+                MessageDigest md = CryptoEngines.getDigest("SHA-512");
+                return md.digest(dataArray);
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+    }
+
+    @LuaFunction
+    public final byte[] hmacSHA512(IComputerAccess computer, ByteBuffer data, ByteBuffer key) throws LuaException {
+        return getContext(computer).metered(() -> {
+            byte[] dataArray = Util.getByteBufferArray(data);
+            byte[] keyArray = Util.getByteBufferArray(key);
+            byte[] res;
+            try {
+                Mac mac = CryptoEngines.getMac("HmacSHA512");
+                SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "HmacSHA512");
+                mac.init(secretKeySpec);
+                res = mac.doFinal(dataArray);
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            }
+            return res;
+        });
+    }
+
+    @LuaFunction
+    public final byte[] hmacMD5(IComputerAccess computer, ByteBuffer data, ByteBuffer key) throws LuaException {
+        return getContext(computer).metered(() -> {
+            byte[] dataArray = Util.getByteBufferArray(data);
+            byte[] keyArray = Util.getByteBufferArray(key);
+            byte[] res;
+            try {
+                Mac mac = CryptoEngines.getMac("HmacMD5");
+                SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "HmacMD5");
+                mac.init(secretKeySpec);
+                res = mac.doFinal(dataArray);
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            }
+            return res;
+        });
+    }
+
+    @LuaFunction
+    public final CCHash createHash(IComputerAccess computer, String algorithm) throws LuaException {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-512");
-            return md.digest(dataArray);
+            return new CCHash(getContext(computer), MessageDigest.getInstance(getHashAlgorithm(algorithm)));
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
@@ -181,42 +619,231 @@ public class PeripheralCryptographicAccelerator extends BPeripheral {
     }
 
     @LuaFunction
-    public final byte[] hmacSHA512(ByteBuffer data, ByteBuffer key) throws LuaException {
-        byte[] dataArray = Util.getByteBufferArray(data);
+    public final CCHmac createHmac(IComputerAccess computer, String algorithm, ByteBuffer key) throws LuaException {
         byte[] keyArray = Util.getByteBufferArray(key);
-        byte[] res;
-        try {
-            Mac mac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "HmacSHA512");
-            mac.init(secretKeySpec);
-            res = mac.doFinal(dataArray);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            throw new LuaException("Internal error, check the logs for more info.");
-        } catch (InvalidKeyException e) {
-            throw new LuaException(e.getMessage());
-        }
-        return res;
+        String macAlgorithm = getHmacAlgorithm(algorithm);
+        AcceleratorContext context = getContext(computer);
+        return context.metered(() -> {
+            try {
+                Mac mac = Mac.getInstance(macAlgorithm);
+                mac.init(new SecretKeySpec(keyArray, macAlgorithm));
+                return new CCHmac(context, mac);
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            }
+        });
     }
 
     @LuaFunction
-    public final byte[] hmacMD5(ByteBuffer data, ByteBuffer key) throws LuaException {
-        byte[] dataArray = Util.getByteBufferArray(data);
+    public final byte[] xorBytes(IComputerAccess computer, ByteBuffer a, ByteBuffer b) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.combine(a, b, (x, y) -> x ^ y));
+    }
+
+    @LuaFunction
+    public final byte[] andBytes(IComputerAccess computer, ByteBuffer a, ByteBuffer b) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.combine(a, b, (x, y) -> x & y));
+    }
+
+    @LuaFunction
+    public final byte[] orBytes(IComputerAccess computer, ByteBuffer a, ByteBuffer b) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.combine(a, b, (x, y) -> x | y));
+    }
+
+    @LuaFunction
+    public final boolean constantTimeEquals(IComputerAccess computer, ByteBuffer a, ByteBuffer b) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.constantTimeEquals(a, b));
+    }
+
+    @LuaFunction
+    public final byte[] rotate(IComputerAccess computer, ByteBuffer data, long bits) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.rotate(data, bits));
+    }
+
+    @LuaFunction
+    public final boolean getBit(IComputerAccess computer, ByteBuffer data, long index) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.getBit(data, index));
+    }
+
+    @LuaFunction
+    public final byte[] setBit(IComputerAccess computer, ByteBuffer data, long index, boolean value) throws LuaException {
+        return getContext(computer).metered(() -> Bitwise.setBit(data, index, value));
+    }
+
+    @LuaFunction
+    public final Object checksum(IComputerAccess computer, String algorithm, ByteBuffer data) throws LuaException {
+        Checksums.Engine engine = Checksums.create(algorithm);
+        return getContext(computer).metered(() -> {
+            engine.update(data);
+            return engine.getValue();
+        });
+    }
+
+    @LuaFunction
+    public final CCChecksum createChecksum(IComputerAccess computer, String algorithm) throws LuaException {
+        return new CCChecksum(getContext(computer), Checksums.create(algorithm));
+    }
+
+    @LuaFunction
+    public final CCCipherSession createCipher(IComputerAccess computer, String mode, ByteBuffer key, ByteBuffer iv, boolean encrypt) throws LuaException {
+        String transformation = CIPHER_MODES.get(mode.toLowerCase());
+        if (transformation == null)
+            throw new LuaException("Mode must be either cbc, ctr or gcm.");
+
+        AcceleratorContext context = getContext(computer);
         byte[] keyArray = Util.getByteBufferArray(key);
-        byte[] res;
+        byte[] ivArray = Util.getByteBufferArray(iv);
+        CCCipherSession session = context.metered(() -> {
+            try {
+                Cipher cipher = Cipher.getInstance(transformation);
+                AlgorithmParameterSpec spec = transformation.startsWith("AES/GCM") ? new GCMParameterSpec(GCM_TAG_LENGTH, ivArray) : new IvParameterSpec(ivArray);
+                cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(keyArray, "AES"), spec);
+                return new CCCipherSession(context, cipher);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                throw new LuaException(e.getMessage());
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+        context.addSession(session);
+        return session;
+    }
+
+    private static int getCompressionLevel(Optional<Integer> level) {
+        return level.orElse(Math.min(DEFAULT_COMPRESSION_LEVEL, Config.MAX_COMPRESSION_LEVEL));
+    }
+
+    @LuaFunction
+    public final byte[] compress(IComputerAccess computer, ByteBuffer data, Optional<String> format, Optional<Integer> level) throws LuaException {
+        return getContext(computer).metered(() -> CCCompressionStream.compressor(null, format.orElse("zlib"), getCompressionLevel(level)).process(data, true));
+    }
+
+    @LuaFunction
+    public final byte[] decompress(IComputerAccess computer, ByteBuffer data, Optional<String> format) throws LuaException {
+        return getContext(computer).metered(() -> CCCompressionStream.decompressor(null, format.orElse("zlib")).process(data, true));
+    }
+
+    @LuaFunction
+    public final CCCompressionStream createCompressor(IComputerAccess computer, Optional<String> format, Optional<Integer> level) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        CCCompressionStream stream = CCCompressionStream.compressor(context, format.orElse("zlib"), getCompressionLevel(level));
+        addSession(context, stream);
+        return stream;
+    }
+
+    @LuaFunction
+    public final CCCompressionStream createDecompressor(IComputerAccess computer, Optional<String> format) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        CCCompressionStream stream = CCCompressionStream.decompressor(context, format.orElse("zlib"));
+        addSession(context, stream);
+        return stream;
+    }
+
+    @LuaFunction
+    public final CCSecureChannel createChannel(IComputerAccess computer, Optional<ByteBuffer> identityKey) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        CCSecureChannel channel = context.metered(() -> {
+            PrivateKey identity = identityKey.isPresent() ? (PrivateKey) importKey(computer, identityKey.get(), "EC", true).getKey() : null;
+            try {
+                return new CCSecureChannel(context, identity);
+            } catch (InvalidKeyException e) {
+                throw new LuaException(e.getMessage());
+            } catch (GeneralSecurityException e) {
+                e.printStackTrace();
+                throw new LuaException("Internal error, check the logs for more info.");
+            }
+        });
+        addSession(context, channel);
+        return channel;
+    }
+
+    private static void addSession(AcceleratorContext context, AcceleratorSession session) throws LuaException {
         try {
-            Mac mac = Mac.getInstance("HmacMD5");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(keyArray, "HmacMD5");
-            mac.init(secretKeySpec);
-            res = mac.doFinal(dataArray);
-        } catch (NoSuchAlgorithmException e) {
+            context.addSession(session);
+        } catch (LuaException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    private static byte[][] getPayloads(Map<?, ?> table, String name) throws LuaException {
+        int n = table.size();
+        if (n > Config.MAX_CRYPTO_BATCH_SIZE)
+            throw new LuaException("You can't process more than " + Config.MAX_CRYPTO_BATCH_SIZE + " " + name + " at once.");
+
+        byte[][] payloads = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            Object value = table.get((double) (i + 1));
+            if (!(value instanceof String))
+                throw new LuaException("Expected a list of strings for " + name + ".");
+            payloads[i] = ((String) value).getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return payloads;
+    }
+
+    private static List<byte[]> runBatch(AcceleratorContext context, byte[][] payloads, CryptoBatch.Operation operation) throws LuaException {
+        LongAdder workerTime = new LongAdder();
+        try {
+            return Arrays.asList(CryptoBatch.run(payloads, operation, workerTime));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+            throw new LuaException(e.getMessage());
+        } catch (GeneralSecurityException e) {
             e.printStackTrace();
             throw new LuaException("Internal error, check the logs for more info.");
-        } catch (InvalidKeyException e) {
-            throw new LuaException(e.getMessage());
+        } finally {
+            context.charge(workerTime.sum());
         }
-        return res;
     }
 
+    @LuaFunction
+    public final List<byte[]> hashMany(IComputerAccess computer, String algorithm, Map<?, ?> payloads) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        return context.metered(() -> {
+            String digestAlgorithm = getHashAlgorithm(algorithm);
+            return runBatch(context, getPayloads(payloads, "payloads"), (i, payload) -> CryptoEngines.getDigest(digestAlgorithm).digest(payload));
+        });
+    }
+
+    @LuaFunction
+    public final List<byte[]> hmacMany(IComputerAccess computer, String algorithm, Map<?, ?> payloads, ByteBuffer key) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        return context.metered(() -> {
+            String macAlgorithm = getHmacAlgorithm(algorithm);
+            SecretKeySpec secretKeySpec = new SecretKeySpec(Util.getByteBufferArray(key), macAlgorithm);
+            return runBatch(context, getPayloads(payloads, "payloads"), (i, payload) -> {
+                Mac mac = CryptoEngines.getMac(macAlgorithm);
+                mac.init(secretKeySpec);
+                return mac.doFinal(payload);
+            });
+        });
+    }
 
+    @LuaFunction
+    public final List<byte[]> encryptMany(IComputerAccess computer, Map<?, ?> payloads, ByteBuffer key, Map<?, ?> ivs) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        return context.metered(() -> aesMany(context, Cipher.ENCRYPT_MODE, payloads, key, ivs));
+    }
+
+    @LuaFunction
+    public final List<byte[]> decryptMany(IComputerAccess computer, Map<?, ?> payloads, ByteBuffer key, Map<?, ?> ivs) throws LuaException {
+        AcceleratorContext context = getContext(computer);
+        return context.metered(() -> aesMany(context, Cipher.DECRYPT_MODE, payloads, key, ivs));
+    }
+
+    private List<byte[]> aesMany(AcceleratorContext context, int mode, Map<?, ?> payloads, ByteBuffer key, Map<?, ?> ivs) throws LuaException {
+        byte[][] dataArrays = getPayloads(payloads, "payloads");
+        byte[][] ivArrays = getPayloads(ivs, "ivs");
+        if (dataArrays.length != ivArrays.length)
+            throw new LuaException("There must be exactly one iv per payload.");
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(Util.getByteBufferArray(key), "AES");
+        return runBatch(context, dataArrays, (i, payload) -> {
+            Cipher cipher = CryptoEngines.getCipher("AES/CBC/PKCS5Padding");
+            cipher.init(mode, secretKeySpec, new IvParameterSpec(ivArrays[i]));
+            return cipher.doFinal(payload);
+        });
+    }
 }
@@ -0,0 +1,108 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import fr.bastoup.bperipherals.BPeripherals;
+import fr.bastoup.bperipherals.util.Config;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAKey;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Generates RSA key pairs away from the computer threads. Asynchronous requests run on a small bounded worker, and
+ * an optional pool of key pairs of the configured size is refilled in the background by a low priority thread.
+ */
+public class RSAKeyPool {
+
+    private static final int MAX_PENDING_REQUESTS = 64;
+
+    private static final ExecutorService WORKER = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_REQUESTS), threadFactory("BPeripherals-RSA-Worker", Thread.NORM_PRIORITY));
+    private static final ExecutorService REFILLER = Executors.newSingleThreadExecutor(threadFactory("BPeripherals-RSA-Pool", Thread.MIN_PRIORITY));
+
+    private static final Queue<KeyPair> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger(0);
+    private static final AtomicInteger REFILLING = new AtomicInteger(0);
+
+    private static ThreadFactory threadFactory(String name, int priority) {
+        AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+
+    public static KeyPair generate(int keySize) throws NoSuchAlgorithmException {
+        KeyPair kp = take(keySize);
+        if (kp != null)
+            return kp;
+
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(keySize, CryptoEngines.getRandom());
+        return kpGen.generateKeyPair();
+    }
+
+    /**
+     * Generates a key pair on the worker thread and hands it to the callback from there, along with the time in
+     * nanoseconds the generation took.
+     *
+     * @return false if too many requests are already waiting.
+     */
+    public static boolean generateAsync(int keySize, ObjLongConsumer<KeyPair> callback) {
+        try {
+            WORKER.execute(() -> {
+                try {
+                    long start = System.nanoTime();
+                    KeyPair kp = generate(keySize);
+                    callback.accept(kp, System.nanoTime() - start);
+                } catch (NoSuchAlgorithmException e) {
+                    BPeripherals.getLogger().error("Unable to generate RSA keys", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static KeyPair take(int keySize) {
+        KeyPair kp = null;
+        if (keySize == Config.RSA_KEY_POOL_KEY_SIZE) {
+            while ((kp = POOL.poll()) != null) {
+                POOLED.decrementAndGet();
+                if (((RSAKey) kp.getPublic()).getModulus().bitLength() == keySize)
+                    break;
+            }
+        }
+        refill();
+        return kp;
+    }
+
+    static void refill() {
+        int missing = Config.RSA_KEY_POOL_SIZE - POOLED.get() - REFILLING.get();
+        for (int i = 0; i < missing; i++) {
+            REFILLING.incrementAndGet();
+            REFILLER.execute(() -> {
+                try {
+                    int keySize = Config.RSA_KEY_POOL_KEY_SIZE;
+                    if (POOLED.get() < Config.RSA_KEY_POOL_SIZE) {
+                        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+                        kpGen.initialize(keySize, CryptoEngines.getRandom());
+                        POOL.offer(kpGen.generateKeyPair());
+                        POOLED.incrementAndGet();
+                    }
+                } catch (NoSuchAlgorithmException e) {
+                    BPeripherals.getLogger().error("Unable to generate RSA keys", e);
+                } finally {
+                    REFILLING.decrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.bastoup.bperipherals.peripherals.cryprographicaccelerator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * A per-thread buffer of random bytes. Each thread has its own generator, a DRBG where the runtime provides one and
+ * the default SecureRandom otherwise, and small requests are served from a pre-filled buffer instead of going through
+ * the generator every time.
+ */
+public class RandomBuffer {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<RandomBuffer> BUFFERS = ThreadLocal.withInitial(RandomBuffer::new);
+
+    private final SecureRandom random = createRandom();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = BUFFER_SIZE;
+
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            // DRBG only exists from Java 9
+            return new SecureRandom();
+        }
+    }
+
+    public static RandomBuffer get() {
+        return BUFFERS.get();
+    }
+
+    public void nextBytes(byte[] bytes) {
+        nextBytes(bytes, 0, bytes.length);
+    }
+
+    public void nextBytes(byte[] bytes, int offset, int length) {
+        if (length > BUFFER_SIZE / 4) {
+            byte[] direct = new byte[length];
+            random.nextBytes(direct);
+            System.arraycopy(direct, 0, bytes, offset, length);
+            return;
+        }
+
+        while (length > 0) {
+            if (position == BUFFER_SIZE) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            int n = Math.min(length, BUFFER_SIZE - position);
+            System.arraycopy(buffer, position, bytes, offset, n);
+            // Bytes handed out once are never kept around
+            Arrays.fill(buffer, position, position + n, (byte) 0);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public int nextByte() {
+        if (position == BUFFER_SIZE) {
+            random.nextBytes(buffer);
+            position = 0;
+        }
+        int b = buffer[position] & 0xFF;
+        buffer[position++] = 0;
+        return b;
+    }
+
+    public long nextLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | nextByte();
+        }
+        return value;
+    }
+
+    /**
+     * @return a uniformly distributed value between 0 inclusive and bound exclusive.
+     */
+    public long nextLong(long bound) {
+        if ((bound & -bound) == bound)
+            return nextLong() & (bound - 1);
+
+        // Reject the values of the last incomplete range so every result is equally likely
+        long bits, value;
+        do {
+            bits = nextLong() >>> 1;
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+}
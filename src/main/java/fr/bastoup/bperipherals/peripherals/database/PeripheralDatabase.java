@@ -2,6 +2,7 @@ package fr.bastoup.bperipherals.peripherals.database;
 
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.lua.LuaFunction;
+import dan200.computercraft.api.peripheral.IComputerAccess;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import fr.bastoup.bperipherals.BPeripherals;
 import fr.bastoup.bperipherals.beans.SQLColumn;
@@ -11,10 +12,12 @@ import fr.bastoup.bperipherals.util.peripherals.BPeripheral;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class PeripheralDatabase extends BPeripheral {
 
@@ -89,6 +92,39 @@ public class PeripheralDatabase extends BPeripheral {
 
     }
 
+    @LuaFunction
+    public final void subscribe(IComputerAccess computer, String table) throws LuaException {
+        checkName(table);
+        if (!getTile().isDiskInserted())
+            throw new LuaException("There is no disk inserted");
+        try {
+            getTile().subscribe(computer, table);
+        } catch (IllegalAccessException | IOException | SQLException e) {
+            e.printStackTrace();
+            throw new LuaException("Internal Error. Please send an issue if the problem persists.");
+        }
+    }
+
+    @LuaFunction
+    public final void unsubscribe(IComputerAccess computer, String table) {
+        getTile().unsubscribe(computer, table);
+    }
+
+    @LuaFunction
+    public final Object search(String tableName, String query, int limit, Optional<Boolean> snippets) throws LuaException {
+        checkName(tableName);
+        if (limit < 1)
+            throw new LuaException("Limit must be equal or greater than 1.");
+
+        String sql = "SELECT rowid, *, rank AS score" +
+                (snippets.orElse(false) ? ", snippet(" + tableName + ", -1, '[', ']', '...', 16) AS snippet" : "") +
+                " FROM " + tableName + " WHERE " + tableName + " MATCH ? ORDER BY rank LIMIT ?;";
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(1, query);
+        parameters.put(2, limit);
+        return new CCPreparedStatement(sql, parameters, this).execute().get("data");
+    }
+
     @LuaFunction
     public final CCPreparedStatement prepareStatement(String sql) {
         return new CCPreparedStatement(sql, this);
@@ -192,8 +228,11 @@ public class PeripheralDatabase extends BPeripheral {
         private final PeripheralDatabase database;
         private final String tableName;
         private final Map<String, SQLColumn> columns = new HashMap<>();
+        // The column names as the caller wrote them, SQLColumn lowercases them
+        private final Map<String, String> names = new HashMap<>();
         private String primaryKey = null;
         private boolean autoIncrement = false;
+        private boolean fullText = false;
 
         CCTableCreator(String tableName, PeripheralDatabase database) {
             this.tableName = tableName;
@@ -222,6 +261,7 @@ public class PeripheralDatabase extends BPeripheral {
             }
 
             columns.put(name.toLowerCase(), new SQLColumn(name, type, notNull, isUnique));
+            names.put(name.toLowerCase(), name);
             return this;
         }
 
@@ -232,6 +272,7 @@ public class PeripheralDatabase extends BPeripheral {
                 autoIncrement = false;
             }
             columns.remove(name.toLowerCase());
+            names.remove(name.toLowerCase());
             return this;
         }
 
@@ -251,6 +292,28 @@ public class PeripheralDatabase extends BPeripheral {
 
         }
 
+        @LuaFunction
+        public final CCTableCreator setFullText(boolean fullText) {
+            this.fullText = fullText;
+            return this;
+        }
+
+        private String getFullTextSQL() throws LuaException {
+            if (columns.isEmpty())
+                throw new LuaException("A full-text table needs at least one column.");
+
+            // FTS5 columns have no constraints, refuse them rather than dropping them silently
+            if (primaryKey != null)
+                throw new LuaException("Full-text tables can't have a primary key.");
+            for (SQLColumn col : columns.values()) {
+                if (!col.getType().equalsIgnoreCase("text"))
+                    throw new LuaException("Full-text tables may only contain TEXT columns.");
+                if (col.isNotNull() || col.isUnique())
+                    throw new LuaException("Full-text table columns can't be NOT NULL or UNIQUE.");
+            }
+            return "CREATE VIRTUAL TABLE " + tableName + " USING fts5(" + String.join(", ", names.values()) + ");";
+        }
+
         @LuaFunction
         public final Map<String, Object> execute() throws LuaException {
             peripheralStillValid();
@@ -267,6 +330,10 @@ public class PeripheralDatabase extends BPeripheral {
                 throw new LuaException("Internal Error. Please send an issue if the problem persists.");
             }
             if (tile.isDiskInserted()) {
+                if (fullText) {
+                    return DBUtil.factorizeResults(BPeripherals.getDBFactory().executeSQL(file.toString(), getFullTextSQL()));
+                }
+
                 if (this.primaryKey == null) {
                     if (columns.containsKey("id")) {
                         throw new LuaException("Column id already exists, cannot create primary key.");
@@ -1,6 +1,10 @@
 package fr.bastoup.bperipherals.peripherals.database;
 
 import dan200.computercraft.api.peripheral.IComputerAccess;
+import dan200.computercraft.api.peripheral.NotAttachedException;
+import fr.bastoup.bperipherals.BPeripherals;
+import fr.bastoup.bperipherals.database.DBChangeListener;
+import fr.bastoup.bperipherals.database.Database;
 import fr.bastoup.bperipherals.init.ModItems;
 import fr.bastoup.bperipherals.init.ModTileTypes;
 import fr.bastoup.bperipherals.util.Util;
@@ -36,15 +40,21 @@ import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
 
-public class TileDatabase extends TilePeripheral implements INamedContainerProvider, ITickableTileEntity, INameable {
+public class TileDatabase extends TilePeripheral implements INamedContainerProvider, ITickableTileEntity, INameable, DBChangeListener {
 	private final InventoryDatabase databaseInventory = new InventoryDatabase(this);
 
 	private final LazyOptional<InventoryDatabase> holderInv = LazyOptional.of(() -> databaseInventory);
 
 	private boolean lastDiskState = false;
+	private Integer lastDatabaseId = null;
 	private ITextComponent customName;
 
+	private final Map<IComputerAccess, Set<String>> subscriptions = new HashMap<>();
+	private Database subscribedDatabase = null;
+
 	public TileDatabase() {
 		super(ModTileTypes.DATABASE);
 		this.setPeripheral(new PeripheralDatabase(this));
@@ -53,14 +63,12 @@ public class TileDatabase extends TilePeripheral implements INamedContainerProvi
 
 	public Path getDatabaseFile() throws IllegalAccessException, IOException {
 
-		Path worldDirectory = Util.getWorldFolder((ServerWorld) this.getLevel());
-
 		Integer databaseId = databaseInventory.getDiskId(true);
 		if (databaseId == null || databaseId == -1) {
 			return null;
 		}
-		Path folder = worldDirectory.resolve("computercraft/database/" + databaseId);
-		Path file = folder.resolve("database.db");
+		Path file = getDatabaseFile(databaseId);
+		Path folder = file.getParent();
 
 		try {
 			Files.createDirectories(folder);
@@ -77,6 +85,88 @@ public class TileDatabase extends TilePeripheral implements INamedContainerProvi
 		return file;
 	}
 
+	private Path getDatabaseFile(int databaseId) throws IllegalAccessException {
+		Path worldDirectory = Util.getWorldFolder((ServerWorld) this.getLevel());
+		return worldDirectory.resolve("computercraft/database/" + databaseId).resolve("database.db");
+	}
+
+	private void closeDatabase(Integer databaseId) {
+		if (databaseId == null || databaseId < 0 || !(this.getLevel() instanceof ServerWorld))
+			return;
+
+		try {
+			BPeripherals.getDBFactory().closeDatabase(getDatabaseFile(databaseId).toString());
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void subscribe(IComputerAccess computer, String table) throws IllegalAccessException, IOException, SQLException {
+		Database db = BPeripherals.getDBFactory().getDatabase(getDatabaseFile().toString());
+		synchronized (subscriptions) {
+			if (subscribedDatabase != db) {
+				clearSubscriptions();
+				subscribedDatabase = db;
+				db.addChangeListener(this);
+			}
+			subscriptions.computeIfAbsent(computer, c -> new HashSet<>()).add(table.toLowerCase(Locale.ROOT));
+		}
+	}
+
+	public void unsubscribe(IComputerAccess computer, String table) {
+		synchronized (subscriptions) {
+			Set<String> tables = subscriptions.get(computer);
+			if (tables != null) {
+				tables.remove(table.toLowerCase(Locale.ROOT));
+				if (tables.isEmpty())
+					subscriptions.remove(computer);
+			}
+		}
+	}
+
+	private void clearSubscriptions() {
+		synchronized (subscriptions) {
+			if (subscribedDatabase != null) {
+				subscribedDatabase.removeChangeListener(this);
+				subscribedDatabase = null;
+			}
+			subscriptions.clear();
+		}
+	}
+
+	@Override
+	public void onChange(String table, String operation, long[] rowIds, int count) {
+		String key = table.toLowerCase(Locale.ROOT);
+		List<Long> ids = null;
+		synchronized (subscriptions) {
+			for (Map.Entry<IComputerAccess, Set<String>> entry : subscriptions.entrySet()) {
+				if (!entry.getValue().contains(key))
+					continue;
+
+				if (ids == null) {
+					ids = new ArrayList<>(rowIds.length);
+					for (long id : rowIds) {
+						ids.add(id);
+					}
+				}
+
+				IComputerAccess c = entry.getKey();
+				try {
+					c.queueEvent("database_changed", c.getAttachmentName(), table, operation, ids, count);
+				} catch (NotAttachedException ignore) {
+				}
+			}
+		}
+	}
+
+	@Override
+	public void removeComputer(IComputerAccess computer) {
+		super.removeComputer(computer);
+		synchronized (subscriptions) {
+			subscriptions.remove(computer);
+		}
+	}
+
 	public Integer getDatabaseId() {
 		Integer id = databaseInventory.getDiskId(true);
 		this.setChanged();
@@ -153,25 +243,43 @@ public class TileDatabase extends TilePeripheral implements INamedContainerProvi
 		if (!this.getLevel().getBlockState(worldPosition).hasProperty(BlockDatabase.DISK_INSERTED))
 			return;
 
-		if (isDiskInserted() && !lastDiskState) {
+		Integer databaseId = isDiskInserted() ? databaseInventory.getDiskId(false) : null;
+		// The disk may have been swapped for another one within a single tick, the old database must be closed then
+		boolean swapped = isDiskInserted() && lastDiskState && lastDatabaseId != null && lastDatabaseId >= 0
+				&& !lastDatabaseId.equals(databaseId);
 
-			this.getLevel().setBlockAndUpdate(worldPosition, this.getBlockState().setValue(BlockDatabase.DISK_INSERTED, true));
+		if (lastDiskState && (!isDiskInserted() || swapped)) {
+			if (!isDiskInserted())
+				this.getLevel().setBlockAndUpdate(worldPosition, this.getBlockState().setValue(BlockDatabase.DISK_INSERTED, false));
+			clearSubscriptions();
+			closeDatabase(lastDatabaseId);
 
 			synchronized (computers) {
 				for (IComputerAccess c : computers) {
-					c.queueEvent("database_attached", c.getAttachmentName(), getDatabaseId(), getDatabaseName());
+					c.queueEvent("database_detached", c.getAttachmentName());
 				}
 			}
-		} else if (!isDiskInserted() && lastDiskState) {
-			this.getLevel().setBlockAndUpdate(worldPosition, this.getBlockState().setValue(BlockDatabase.DISK_INSERTED, false));
+		}
+
+		if (isDiskInserted() && (!lastDiskState || swapped)) {
+			if (!lastDiskState)
+				this.getLevel().setBlockAndUpdate(worldPosition, this.getBlockState().setValue(BlockDatabase.DISK_INSERTED, true));
 
 			synchronized (computers) {
 				for (IComputerAccess c : computers) {
-					c.queueEvent("database_detached", c.getAttachmentName());
+					c.queueEvent("database_attached", c.getAttachmentName(), getDatabaseId(), getDatabaseName());
 				}
 			}
 		}
 		lastDiskState = isDiskInserted();
+		lastDatabaseId = lastDiskState ? databaseInventory.getDiskId(false) : null;
+	}
+
+	@Override
+	public void setRemoved() {
+		super.setRemoved();
+		clearSubscriptions();
+		closeDatabase(databaseInventory.isDiskInserted() ? databaseInventory.getDiskId(false) : lastDatabaseId);
 	}
 
 	@Nullable
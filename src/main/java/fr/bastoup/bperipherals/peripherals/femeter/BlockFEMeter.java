@@ -2,10 +2,13 @@ package fr.bastoup.bperipherals.peripherals.femeter;
 
 import fr.bastoup.bperipherals.init.ModTileTypes;
 import fr.bastoup.bperipherals.util.blocks.BlockPeripheral;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.material.Material;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
 
 public class BlockFEMeter extends BlockPeripheral {
 
@@ -18,6 +21,15 @@ public class BlockFEMeter extends BlockPeripheral {
         return true;
     }
 
+    @Override
+    @SuppressWarnings("deprecation")
+    public void neighborChanged(BlockState state, World world, BlockPos pos, Block block, BlockPos fromPos, boolean isMoving) {
+        super.neighborChanged(state, world, pos, block, fromPos, isMoving);
+        TileEntity tile = world.getBlockEntity(pos);
+        if (tile instanceof TileFEMeter)
+            ((TileFEMeter) tile).onNeighborChanged(fromPos);
+    }
+
     @Override
 	public TileEntity createTileEntity(BlockState state, IBlockReader world) {
         return ModTileTypes.FE_METER.create();
@@ -1,5 +1,6 @@
 package fr.bastoup.bperipherals.peripherals.femeter;
 
+import fr.bastoup.bperipherals.network.PacketFEMeterSync;
 import fr.bastoup.bperipherals.util.BlockFaces;
 import fr.bastoup.bperipherals.util.Config;
 import fr.bastoup.bperipherals.util.Util;
@@ -8,8 +9,9 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.common.util.INBTSerializable;
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.common.util.NonNullConsumer;
 import net.minecraftforge.energy.CapabilityEnergy;
 import net.minecraftforge.energy.IEnergyStorage;
 
@@ -18,7 +20,19 @@ public class EnergyFEMeterOut implements IEnergyStorage, INBTSerializable<Compou
 	private int energyStored;
 	private int transferRate;
 	private final TileFEMeter tile;
-	private boolean updated = false;
+
+	private LazyOptional<IEnergyStorage> target = LazyOptional.empty();
+	private boolean targetValid = false;
+	private BlockPos targetPos = null;
+	private Direction targetFace = null;
+	// The last capability the listener was added to, so re-resolving the same capability doesn't stack listeners
+	private LazyOptional<IEnergyStorage> listenedTarget = null;
+	private final NonNullConsumer<LazyOptional<IEnergyStorage>> targetListener = cap -> {
+		if (cap == listenedTarget)
+			listenedTarget = null;
+		if (cap == target)
+			invalidateTarget();
+	};
 
 	public EnergyFEMeterOut(TileFEMeter tileRFMeter) {
 		energyStored = 0;
@@ -67,7 +81,6 @@ public class EnergyFEMeterOut implements IEnergyStorage, INBTSerializable<Compou
 		} else actualTransferRate = Math.max(transferRate, 0);
 
 		this.transferRate = actualTransferRate;
-		updated = true;
 		tile.setChanged();
 	}
 	
@@ -80,7 +93,6 @@ public class EnergyFEMeterOut implements IEnergyStorage, INBTSerializable<Compou
 
 		if (!simulate) {
 			energyStored += actualTransfer;
-			updated = true;
 			tile.setChanged();
 		}
 
@@ -91,19 +103,54 @@ public class EnergyFEMeterOut implements IEnergyStorage, INBTSerializable<Compou
 		return Math.min(energyStored, transferRate);
 	}
 	
+	/**
+	 * Returns the energy storage of the block on the output side. The capability is looked up once and kept until the
+	 * neighbor invalidates it, the neighbor changes or the meter is rotated, so the per-tick path doesn't allocate.
+	 */
+	private IEnergyStorage getTarget() {
+		if (!targetValid) {
+			World world = tile.getLevel();
+			if (world == null)
+				return null;
+
+			if (targetPos == null) {
+				Direction rightFace = tile.getFacingOfFace(BlockFaces.RIGHT);
+				targetPos = Util.getNextPos(tile.getBlockPos(), rightFace);
+				targetFace = Util.getOppositeFacing(rightFace);
+			}
+			// Look again next tick rather than caching the absence of a block that isn't loaded yet
+			if (!world.isLoaded(targetPos))
+				return null;
+
+			TileEntity targetTile = world.getBlockEntity(targetPos);
+			LazyOptional<IEnergyStorage> cap = targetTile == null ? null : targetTile.getCapability(CapabilityEnergy.ENERGY, targetFace);
+			target = cap == null ? LazyOptional.empty() : cap;
+			if (target.isPresent() && target != listenedTarget) {
+				listenedTarget = target;
+				target.addListener(targetListener);
+			}
+			targetValid = true;
+		}
+		return target.orElse(null);
+	}
+
+	public BlockPos getTargetPos() {
+		return targetPos;
+	}
+
+	public void invalidateTarget() {
+		targetValid = false;
+		targetPos = null;
+		targetFace = null;
+		target = LazyOptional.empty();
+	}
+
 	public void sendEnergy() {
-		Direction rightFace = tile.getFacingOfFace(BlockFaces.RIGHT);
-		BlockPos pos = Util.getNextPos(tile.getBlockPos(), rightFace);
-		World world = tile.getLevel();
-		if (world == null)
-			return;
-		TileEntity targetTile = world.getBlockEntity(pos);
-		if (targetTile != null && ((ICapabilityProvider) targetTile).getCapability(CapabilityEnergy.ENERGY, Util.getOppositeFacing(rightFace)).isPresent()) {
-			IEnergyStorage cap = ((ICapabilityProvider) targetTile).getCapability(CapabilityEnergy.ENERGY, Util.getOppositeFacing(rightFace)).orElse(null);
-			if (cap.canReceive()) {
-				int extracted = cap.receiveEnergy(getExtractableEnergy(), false);
+		IEnergyStorage cap = getTarget();
+		if (cap != null && cap.canReceive()) {
+			int extracted = cap.receiveEnergy(getExtractableEnergy(), false);
+			if (extracted > 0) {
 				energyStored -= extracted;
-				updated = true;
 				tile.setChanged();
 			}
 		}
@@ -113,12 +160,14 @@ public class EnergyFEMeterOut implements IEnergyStorage, INBTSerializable<Compou
 		return Config.MAX_FE_METER_TRANSFER_RATE;
 	}
 	
-	public boolean resetUpdated() {
-		if(updated) {
-			updated = false;
-			return true;
-		}
-		return false;
+	/**
+	 * Applies the state sent by the server, on the client side.
+	 */
+	void applySync(PacketFEMeterSync packet) {
+		if (packet.has(PacketFEMeterSync.ENERGY_STORED))
+			energyStored = packet.getEnergyStored();
+		if (packet.has(PacketFEMeterSync.TRANSFER_RATE))
+			transferRate = packet.getTransferRate();
 	}
 
 	@Override
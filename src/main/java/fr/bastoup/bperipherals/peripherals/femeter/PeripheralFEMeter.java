@@ -1,9 +1,14 @@
 package fr.bastoup.bperipherals.peripherals.femeter;
 
+import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.lua.LuaFunction;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import fr.bastoup.bperipherals.util.peripherals.BPeripheral;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 public class PeripheralFEMeter extends BPeripheral {
 
     public static final String TYPE = "fe_meter";
@@ -56,4 +61,50 @@ public class PeripheralFEMeter extends BPeripheral {
     public final int getMaxTransferRate() {
         return getTile().getMaxTransferRate();
     }
+
+    private int getTicks(Optional<Integer> ticks) throws LuaException {
+        int capacity = getTile().getHistory().getCapacity();
+        if (!ticks.isPresent())
+            return capacity;
+        if (ticks.get() < 1 || ticks.get() > capacity)
+            throw new LuaException("Ticks must be between 1 and " + capacity);
+        return ticks.get();
+    }
+
+    @LuaFunction
+    public final int getHistorySize() {
+        return getTile().getHistory().getCapacity();
+    }
+
+    @LuaFunction
+    public final List<Integer> getHistory(Optional<Integer> ticks) throws LuaException {
+        int[] samples = getTile().getHistory().getLast(getTicks(ticks));
+        List<Integer> result = new ArrayList<>(samples.length);
+        for (int sample : samples) {
+            result.add(sample);
+        }
+        return result;
+    }
+
+    @LuaFunction
+    public final double getAverage(Optional<Integer> ticks) throws LuaException {
+        return getTile().getHistory().getAverage(getTicks(ticks));
+    }
+
+    @LuaFunction
+    public final int getMin(Optional<Integer> ticks) throws LuaException {
+        return getTile().getHistory().getMin(getTicks(ticks));
+    }
+
+    @LuaFunction
+    public final int getMax(Optional<Integer> ticks) throws LuaException {
+        return getTile().getHistory().getMax(getTicks(ticks));
+    }
+
+    @LuaFunction
+    public final int getPercentile(double percentile, Optional<Integer> ticks) throws LuaException {
+        if (percentile < 0 || percentile > 100)
+            throw new LuaException("Percentile must be between 0 and 100");
+        return getTile().getHistory().getPercentile(percentile, getTicks(ticks));
+    }
 }
@@ -1,6 +1,9 @@
 package fr.bastoup.bperipherals.peripherals.femeter;
 
 import fr.bastoup.bperipherals.init.ModTileTypes;
+import fr.bastoup.bperipherals.network.BPeripheralsNetwork;
+import fr.bastoup.bperipherals.network.PacketFEMeterSync;
+import fr.bastoup.bperipherals.util.Config;
 import fr.bastoup.bperipherals.util.tiles.TilePeripheral;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
@@ -8,9 +11,11 @@ import net.minecraft.network.NetworkManager;
 import net.minecraft.network.play.server.SUpdateTileEntityPacket;
 import net.minecraft.tileentity.ITickableTileEntity;
 import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.energy.CapabilityEnergy;
+import net.minecraftforge.fml.network.PacketDistributor;
 
 import javax.annotation.Nonnull;
 
@@ -24,6 +29,13 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
 
     private int energyTransferedLastTick = 0;
     private int energyStoredLastTick = 0;
+    private final TransferHistory history = new TransferHistory();
+
+    // What the clients were last sent, so only meaningful changes are synced
+    private long lastSyncTime = Long.MIN_VALUE; // Never synced, adding the interval to it can't overflow
+    private int syncedEnergyStored = 0;
+    private int syncedTransferRate = -1;
+    private int syncedEnergyTransfered = 0;
 
     public TileFEMeter() {
         super(ModTileTypes.FE_METER);
@@ -34,7 +46,7 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
     @Override
     public CompoundNBT getUpdateTag() {
         CompoundNBT nbt = new CompoundNBT();
-        nbt.put("Energy", holderOut.orElse(null).serializeNBT());
+        nbt.put("Energy", outEnergyStorage.serializeNBT());
         nbt.putInt("energyTransfered", energyTransferedLastTick);
         return nbt;
     }
@@ -42,14 +54,14 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
 	@Override
     public void onDataPacket(NetworkManager net, SUpdateTileEntityPacket pkt) {
         CompoundNBT nbt = pkt.getTag();
-        holderOut.orElse(null).deserializeNBT(nbt.getCompound("Energy"));
+        outEnergyStorage.deserializeNBT(nbt.getCompound("Energy"));
         energyTransferedLastTick = nbt.getInt("energyTransfered");
     }
 
     @Override
     public void deserializeNBT(BlockState state, CompoundNBT nbt) {
         super.deserializeNBT(state, nbt);
-        holderOut.orElse(null).deserializeNBT(nbt.getCompound("Energy"));
+        outEnergyStorage.deserializeNBT(nbt.getCompound("Energy"));
         energyTransferedLastTick = nbt.getInt("energyTransfered");
     }
 
@@ -57,7 +69,7 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
     @Override
     public CompoundNBT serializeNBT() {
         CompoundNBT nbt = super.serializeNBT();
-        nbt.put("Energy", holderOut.orElse(null).serializeNBT());
+        nbt.put("Energy", outEnergyStorage.serializeNBT());
         nbt.putInt("energyTransfered", energyTransferedLastTick);
         return nbt;
     }
@@ -65,7 +77,7 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
     @Override
     public CompoundNBT save(CompoundNBT nbtParam) {
         CompoundNBT nbt = super.save(nbtParam);
-        nbt.put("Energy", holderOut.orElse(null).serializeNBT());
+        nbt.put("Energy", outEnergyStorage.serializeNBT());
         nbt.putInt("energyTransfered", energyTransferedLastTick);
         return nbt;
     }
@@ -73,7 +85,7 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
     @Override
     public void load(BlockState state, CompoundNBT nbt) {
         super.load(state, nbt);
-        holderOut.orElse(null).deserializeNBT(nbt.getCompound("Energy"));
+        outEnergyStorage.deserializeNBT(nbt.getCompound("Energy"));
         energyTransferedLastTick = nbt.getInt("energyTransfered");
     }
 
@@ -99,37 +111,111 @@ public class TileFEMeter extends TilePeripheral implements ITickableTileEntity {
 	@Override
 	public void tick() {
         if (!this.getLevel().isClientSide) {
-            energyStoredLastTick = holderOut.orElse(null).getEnergyStored();
-            holderOut.orElse(null).sendEnergy();
-            energyTransferedLastTick = energyStoredLastTick - holderOut.orElse(null).getEnergyStored();
+            energyStoredLastTick = outEnergyStorage.getEnergyStored();
+            outEnergyStorage.sendEnergy();
+            energyTransferedLastTick = energyStoredLastTick - outEnergyStorage.getEnergyStored();
+            history.add(energyTransferedLastTick);
+
+            long time = this.getLevel().getGameTime();
+            if (time >= lastSyncTime + Config.FE_METER_SYNC_INTERVAL)
+                syncClients(time);
+        }
+    }
 
-            if (holderOut.orElse(null).resetUpdated()) {
-                this.getLevel().sendBlockUpdated(worldPosition, this.getLevel().getBlockState(worldPosition), this.getLevel().getBlockState(worldPosition), 2);
-            }
+    /**
+     * Sends the fields that changed by more than the configured thresholds to the clients tracking this meter. Once
+     * the last update is older than the maximum interval, any change is sent so small drifts don't stay hidden.
+     * Clients loading the chunk get the full state from {@link #getUpdateTag()}.
+     */
+    private void syncClients(long time) {
+        int energyStored = outEnergyStorage.getEnergyStored();
+        int transferRate = outEnergyStorage.getTransferRate();
+        boolean stale = time >= lastSyncTime + Config.FE_METER_SYNC_MAX_INTERVAL;
+
+        int mask = 0;
+        if (hasChanged(energyStored, syncedEnergyStored, stale ? 0 : Config.FE_METER_SYNC_ENERGY_THRESHOLD)) {
+            mask |= PacketFEMeterSync.ENERGY_STORED;
+            syncedEnergyStored = energyStored;
+        }
+        if (transferRate != syncedTransferRate) {
+            mask |= PacketFEMeterSync.TRANSFER_RATE;
+            syncedTransferRate = transferRate;
+        }
+        if (hasChanged(energyTransferedLastTick, syncedEnergyTransfered, stale ? 0 : Config.FE_METER_SYNC_TRANSFER_THRESHOLD)) {
+            mask |= PacketFEMeterSync.ENERGY_TRANSFERED;
+            syncedEnergyTransfered = energyTransferedLastTick;
         }
+        if (mask == 0)
+            return;
+
+        lastSyncTime = time;
+
+        BPeripheralsNetwork.CHANNEL.send(PacketDistributor.TRACKING_CHUNK.with(() -> this.getLevel().getChunkAt(worldPosition)),
+                new PacketFEMeterSync(worldPosition, mask, energyStored, transferRate, energyTransferedLastTick));
+    }
+
+    private static boolean hasChanged(int value, int synced, int threshold) {
+        if (value == synced)
+            return false;
+        // Always let the clients know when the meter goes idle
+        return value == 0 || Math.abs((long) value - synced) >= threshold;
+    }
+
+    public void applySync(PacketFEMeterSync packet) {
+        outEnergyStorage.applySync(packet);
+        if (packet.has(PacketFEMeterSync.ENERGY_TRANSFERED))
+            energyTransferedLastTick = packet.getEnergyTransfered();
+    }
+
+    /**
+     * Called when a neighbor changed, the output may now be facing another block.
+     */
+    public void onNeighborChanged(BlockPos neighbor) {
+        BlockPos target = outEnergyStorage.getTargetPos();
+        if (target == null || target.equals(neighbor))
+            outEnergyStorage.invalidateTarget();
+    }
+
+    @Override
+    public void clearCache() {
+        super.clearCache();
+        // The block may have been rotated
+        outEnergyStorage.invalidateTarget();
+    }
+
+    @Override
+    public void setRemoved() {
+        super.setRemoved();
+        holderIn.invalidate();
+        holderOut.invalidate();
+        outEnergyStorage.invalidateTarget();
     }
 
     public int getEnergyTransferedLastTick() {
         return energyTransferedLastTick;
     }
 
+    public TransferHistory getHistory() {
+        return history;
+    }
+
     public int getEnergyStored() {
-        return holderOut.orElse(null).getEnergyStored();
+        return outEnergyStorage.getEnergyStored();
     }
 
     public int getMaxEnergyStored() {
-        return holderOut.orElse(null).getMaxEnergyStored();
+        return outEnergyStorage.getMaxEnergyStored();
     }
 
     public int getTransferRate() {
-        return holderOut.orElse(null).getTransferRate();
+        return outEnergyStorage.getTransferRate();
     }
 
     public void setTransferRate(int rate) {
-        holderOut.orElse(null).setTransferRate(rate);
+        outEnergyStorage.setTransferRate(rate);
     }
 
     public int getMaxTransferRate() {
-        return holderOut.orElse(null).getMaxTransferRate();
+        return outEnergyStorage.getMaxTransferRate();
     }
 }
@@ -0,0 +1,99 @@
+package fr.bastoup.bperipherals.peripherals.femeter;
+
+import fr.bastoup.bperipherals.util.Config;
+
+import java.util.Arrays;
+
+/**
+ * The energy transferred by an FE Meter over the last ticks, kept in a fixed-size ring buffer. Samples are written
+ * by the server thread and read by the computer threads, hence the synchronization.
+ */
+public class TransferHistory {
+
+    private int[] samples = new int[Config.FE_METER_HISTORY_SIZE];
+    private int next = 0;
+    private int size = 0;
+
+    public synchronized void add(int sample) {
+        if (samples.length != Config.FE_METER_HISTORY_SIZE) {
+            samples = new int[Config.FE_METER_HISTORY_SIZE];
+            next = 0;
+            size = 0;
+        }
+
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        if (size < samples.length)
+            size++;
+    }
+
+    public synchronized int getCapacity() {
+        return samples.length;
+    }
+
+    /**
+     * Returns the last samples, oldest first. Fewer are returned if the meter hasn't been running for that long.
+     */
+    public synchronized int[] getLast(int ticks) {
+        int count = Math.min(ticks, size);
+        int[] result = new int[count];
+        int start = next - count;
+        if (start < 0) {
+            int wrapped = -start;
+            System.arraycopy(samples, samples.length - wrapped, result, 0, wrapped);
+            System.arraycopy(samples, 0, result, wrapped, count - wrapped);
+        } else {
+            System.arraycopy(samples, start, result, 0, count);
+        }
+        return result;
+    }
+
+    public double getAverage(int ticks) {
+        int[] last = getLast(ticks);
+        if (last.length == 0)
+            return 0;
+
+        long sum = 0;
+        for (int sample : last) {
+            sum += sample;
+        }
+        return (double) sum / last.length;
+    }
+
+    public int getMin(int ticks) {
+        int[] last = getLast(ticks);
+        if (last.length == 0)
+            return 0;
+
+        int min = Integer.MAX_VALUE;
+        for (int sample : last) {
+            min = Math.min(min, sample);
+        }
+        return min;
+    }
+
+    public int getMax(int ticks) {
+        int[] last = getLast(ticks);
+        if (last.length == 0)
+            return 0;
+
+        int max = Integer.MIN_VALUE;
+        for (int sample : last) {
+            max = Math.max(max, sample);
+        }
+        return max;
+    }
+
+    /**
+     * Nearest-rank percentile of the last samples.
+     */
+    public int getPercentile(double percentile, int ticks) {
+        int[] last = getLast(ticks);
+        if (last.length == 0)
+            return 0;
+
+        Arrays.sort(last);
+        int rank = (int) Math.ceil(percentile / 100 * last.length);
+        return last[Math.max(rank, 1) - 1];
+    }
+}
@@ -14,10 +14,37 @@ import net.minecraftforge.fml.config.ModConfig;
 public class Config {
 
     public static int MAX_DATABASE_SIZE = 1024;
+    public static int DATABASE_READ_CONNECTIONS = 4;
+    public static int DATABASE_BUSY_TIMEOUT = 5000;
+    public static boolean MEMORY_DATABASES = false;
+    public static int MEMORY_DATABASE_SNAPSHOT_INTERVAL = 6000;
+    public static boolean MEMORY_DATABASE_SNAPSHOT_ON_SAVE = true;
     public static int MAX_RANDOM_BYTES_SIZE = 1024;
+    public static int MAX_CRYPTO_SESSIONS = 16;
+    public static int MAX_KEY_HANDLES = 32;
+    public static int KEY_CACHE_SIZE = 32;
+    public static int MAX_CRYPTO_BATCH_SIZE = 1024;
+    public static int CRYPTO_BATCH_PARALLELISM = 2;
+    public static int RSA_KEY_POOL_SIZE = 0;
+    public static int RSA_KEY_POOL_KEY_SIZE = 1024;
+    public static int DEFAULT_PBKDF2_ITERATIONS = 50000;
+    public static int MAX_PBKDF2_ITERATIONS = 200000;
+    public static int PASSWORD_HASH_THREADS = 2;
+    public static int MAX_CONCURRENT_PASSWORD_HASHES = 2;
+    public static int CRYPTO_CPU_BUDGET = 2000;
+    public static int CRYPTO_CPU_BUDGET_REFILL = 200;
+    public static int MAX_COMPRESSION_LEVEL = 9;
+    public static int MAX_COMPRESSION_OUTPUT = 1048576;
+    public static int MAX_PACK_SIZE = 1048576;
+    public static int CRYPTO_BENCHMARK_CASE_TIME = 50;
     public static int MAX_MAG_CARD_DATA = 32;
     public static int MAX_FE_METER_TRANSFER_RATE = 32000;
     public static int FE_METER_INTERNAL_BUFFER_SIZE = 64000;
+    public static int FE_METER_SYNC_INTERVAL = 10;
+    public static int FE_METER_SYNC_ENERGY_THRESHOLD = 1000;
+    public static int FE_METER_SYNC_TRANSFER_THRESHOLD = 100;
+    public static int FE_METER_SYNC_MAX_INTERVAL = 100;
+    public static int FE_METER_HISTORY_SIZE = 1200;
 
     public static void setup() {
         ModLoadingContext.get().registerConfig(ModConfig.Type.SERVER, ConfigValues.serverSpecs);
@@ -25,10 +52,37 @@ public class Config {
 
     public static void sync() {
         MAX_DATABASE_SIZE = ConfigValues.MAX_DATABASE_SIZE.get();
+        DATABASE_READ_CONNECTIONS = ConfigValues.DATABASE_READ_CONNECTIONS.get();
+        DATABASE_BUSY_TIMEOUT = ConfigValues.DATABASE_BUSY_TIMEOUT.get();
+        MEMORY_DATABASES = ConfigValues.MEMORY_DATABASES.get();
+        MEMORY_DATABASE_SNAPSHOT_INTERVAL = ConfigValues.MEMORY_DATABASE_SNAPSHOT_INTERVAL.get();
+        MEMORY_DATABASE_SNAPSHOT_ON_SAVE = ConfigValues.MEMORY_DATABASE_SNAPSHOT_ON_SAVE.get();
         MAX_RANDOM_BYTES_SIZE = ConfigValues.MAX_RANDOM_BYTES_SIZE.get();
+        MAX_CRYPTO_SESSIONS = ConfigValues.MAX_CRYPTO_SESSIONS.get();
+        MAX_KEY_HANDLES = ConfigValues.MAX_KEY_HANDLES.get();
+        KEY_CACHE_SIZE = ConfigValues.KEY_CACHE_SIZE.get();
+        MAX_CRYPTO_BATCH_SIZE = ConfigValues.MAX_CRYPTO_BATCH_SIZE.get();
+        CRYPTO_BATCH_PARALLELISM = ConfigValues.CRYPTO_BATCH_PARALLELISM.get();
+        RSA_KEY_POOL_SIZE = ConfigValues.RSA_KEY_POOL_SIZE.get();
+        RSA_KEY_POOL_KEY_SIZE = ConfigValues.RSA_KEY_POOL_KEY_SIZE.get();
+        MAX_PBKDF2_ITERATIONS = ConfigValues.MAX_PBKDF2_ITERATIONS.get();
+        DEFAULT_PBKDF2_ITERATIONS = Math.min(ConfigValues.DEFAULT_PBKDF2_ITERATIONS.get(), MAX_PBKDF2_ITERATIONS);
+        PASSWORD_HASH_THREADS = ConfigValues.PASSWORD_HASH_THREADS.get();
+        MAX_CONCURRENT_PASSWORD_HASHES = ConfigValues.MAX_CONCURRENT_PASSWORD_HASHES.get();
+        CRYPTO_CPU_BUDGET = ConfigValues.CRYPTO_CPU_BUDGET.get();
+        CRYPTO_CPU_BUDGET_REFILL = ConfigValues.CRYPTO_CPU_BUDGET_REFILL.get();
+        MAX_COMPRESSION_LEVEL = ConfigValues.MAX_COMPRESSION_LEVEL.get();
+        MAX_COMPRESSION_OUTPUT = ConfigValues.MAX_COMPRESSION_OUTPUT.get();
+        MAX_PACK_SIZE = ConfigValues.MAX_PACK_SIZE.get();
+        CRYPTO_BENCHMARK_CASE_TIME = ConfigValues.CRYPTO_BENCHMARK_CASE_TIME.get();
         MAX_MAG_CARD_DATA = ConfigValues.MAX_MAG_CARD_DATA.get();
         MAX_FE_METER_TRANSFER_RATE = ConfigValues.MAX_FE_METER_TRANSFER_RATE.get();
         FE_METER_INTERNAL_BUFFER_SIZE = ConfigValues.FE_METER_INTERNAL_BUFFER_SIZE.get();
+        FE_METER_SYNC_INTERVAL = ConfigValues.FE_METER_SYNC_INTERVAL.get();
+        FE_METER_SYNC_ENERGY_THRESHOLD = ConfigValues.FE_METER_SYNC_ENERGY_THRESHOLD.get();
+        FE_METER_SYNC_TRANSFER_THRESHOLD = ConfigValues.FE_METER_SYNC_TRANSFER_THRESHOLD.get();
+        FE_METER_SYNC_MAX_INTERVAL = ConfigValues.FE_METER_SYNC_MAX_INTERVAL.get();
+        FE_METER_HISTORY_SIZE = ConfigValues.FE_METER_HISTORY_SIZE.get();
 
     }
 
@@ -49,9 +103,31 @@ public class Config {
     public static class ConfigValues {
         // Database
         protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_DATABASE_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> DATABASE_READ_CONNECTIONS;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> DATABASE_BUSY_TIMEOUT;
+        protected static final ForgeConfigSpec.ConfigValue<Boolean> MEMORY_DATABASES;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MEMORY_DATABASE_SNAPSHOT_INTERVAL;
+        protected static final ForgeConfigSpec.ConfigValue<Boolean> MEMORY_DATABASE_SNAPSHOT_ON_SAVE;
 
         //Cryptographic Accelerator
         protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_RANDOM_BYTES_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_CRYPTO_SESSIONS;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_KEY_HANDLES;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> KEY_CACHE_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_CRYPTO_BATCH_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> CRYPTO_BATCH_PARALLELISM;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> RSA_KEY_POOL_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> RSA_KEY_POOL_KEY_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> DEFAULT_PBKDF2_ITERATIONS;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_PBKDF2_ITERATIONS;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> PASSWORD_HASH_THREADS;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_CONCURRENT_PASSWORD_HASHES;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> CRYPTO_CPU_BUDGET;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> CRYPTO_CPU_BUDGET_REFILL;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_COMPRESSION_LEVEL;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_COMPRESSION_OUTPUT;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_PACK_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> CRYPTO_BENCHMARK_CASE_TIME;
 
         //Mag Card Reader
         protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_MAG_CARD_DATA;
@@ -59,6 +135,11 @@ public class Config {
         //FE Meter
         protected static final ForgeConfigSpec.ConfigValue<Integer> MAX_FE_METER_TRANSFER_RATE;
         protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_INTERNAL_BUFFER_SIZE;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_SYNC_INTERVAL;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_SYNC_ENERGY_THRESHOLD;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_SYNC_TRANSFER_THRESHOLD;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_SYNC_MAX_INTERVAL;
+        protected static final ForgeConfigSpec.ConfigValue<Integer> FE_METER_HISTORY_SIZE;
 
         protected static final ForgeConfigSpec serverSpecs;
 
@@ -69,10 +150,98 @@ public class Config {
                     .comment("The maximum Database Disks size in kibibytes ( 1 KiB = 1024 Bytes ).")
                     .defineInRange("max_database_size", Config.MAX_DATABASE_SIZE, 1, Integer.MAX_VALUE);
 
+            DATABASE_READ_CONNECTIONS = builder
+                    .comment("The maximum number of read-only connections kept open per inserted Database Disk. Reads run in parallel on these connections, writes are serialized on a single connection.")
+                    .defineInRange("database_read_connections", Config.DATABASE_READ_CONNECTIONS, 1, 64);
+
+            DATABASE_BUSY_TIMEOUT = builder
+                    .comment("The time in milliseconds a database request waits for a busy database or a free read connection before failing. Writes wait for each other in arrival order.")
+                    .defineInRange("database_busy_timeout", Config.DATABASE_BUSY_TIMEOUT, 0, 60000);
+
+            MEMORY_DATABASES = builder
+                    .comment("Whether Database Disks are held in memory while inserted instead of being read from and written to the world folder on every request.")
+                    .define("memory_databases", Config.MEMORY_DATABASES);
+
+            MEMORY_DATABASE_SNAPSHOT_INTERVAL = builder
+                    .comment("The interval in ticks between two snapshots of the in-memory databases to the world folder. 0 disables periodic snapshots.")
+                    .defineInRange("memory_database_snapshot_interval", Config.MEMORY_DATABASE_SNAPSHOT_INTERVAL, 0, Integer.MAX_VALUE);
+
+            MEMORY_DATABASE_SNAPSHOT_ON_SAVE = builder
+                    .comment("Whether the in-memory databases are written to the world folder when the world is saved. If this is false and the snapshot interval is 0, in-memory databases are never persisted.")
+                    .define("memory_database_snapshot_on_save", Config.MEMORY_DATABASE_SNAPSHOT_ON_SAVE);
+
             MAX_RANDOM_BYTES_SIZE = builder
                     .comment("The maximum length of randomBytes that can be generated.")
                     .defineInRange("max_random_bytes_size", Config.MAX_RANDOM_BYTES_SIZE, 1, Integer.MAX_VALUE);
 
+            MAX_CRYPTO_SESSIONS = builder
+                    .comment("The maximum number of cipher sessions a computer can keep open on a Cryptographic Accelerator.")
+                    .defineInRange("max_crypto_sessions", Config.MAX_CRYPTO_SESSIONS, 1, Integer.MAX_VALUE);
+
+            MAX_KEY_HANDLES = builder
+                    .comment("The maximum number of keys a computer can import (importPublicKey, importPrivateKey) on a Cryptographic Accelerator without releasing them.")
+                    .defineInRange("max_key_handles", Config.MAX_KEY_HANDLES, 1, Integer.MAX_VALUE);
+
+            KEY_CACHE_SIZE = builder
+                    .comment("The number of keys passed as strings a Cryptographic Accelerator keeps parsed for each computer. The least recently used keys are parsed again when needed.")
+                    .defineInRange("key_cache_size", Config.KEY_CACHE_SIZE, 1, Integer.MAX_VALUE);
+
+            MAX_CRYPTO_BATCH_SIZE = builder
+                    .comment("The maximum number of payloads a single batch call (hashMany, hmacMany, encryptMany, decryptMany) can process.")
+                    .defineInRange("max_crypto_batch_size", Config.MAX_CRYPTO_BATCH_SIZE, 1, Integer.MAX_VALUE);
+
+            CRYPTO_BATCH_PARALLELISM = builder
+                    .comment("The number of threads large crypto batches are split over. 1 runs batches on the computer thread only.")
+                    .defineInRange("crypto_batch_parallelism", Config.CRYPTO_BATCH_PARALLELISM, 1, 64);
+
+            RSA_KEY_POOL_SIZE = builder
+                    .comment("The number of RSA key pairs generated ahead of time in the background. 0 disables the pool.")
+                    .defineInRange("rsa_key_pool_size", Config.RSA_KEY_POOL_SIZE, 0, 256);
+
+            RSA_KEY_POOL_KEY_SIZE = builder
+                    .comment("The size in bits of the RSA key pairs generated ahead of time.")
+                    .defineInRange("rsa_key_pool_key_size", Config.RSA_KEY_POOL_KEY_SIZE, 512, 1024);
+
+            DEFAULT_PBKDF2_ITERATIONS = builder
+                    .comment("The number of PBKDF2 iterations hashPassword uses when none is given.")
+                    .defineInRange("default_pbkdf2_iterations", Config.DEFAULT_PBKDF2_ITERATIONS, 1, Integer.MAX_VALUE);
+
+            MAX_PBKDF2_ITERATIONS = builder
+                    .comment("The maximum number of PBKDF2 iterations a password can be hashed or verified with.")
+                    .defineInRange("max_pbkdf2_iterations", Config.MAX_PBKDF2_ITERATIONS, 1, Integer.MAX_VALUE);
+
+            PASSWORD_HASH_THREADS = builder
+                    .comment("The number of threads password hashing runs on, shared by all the Cryptographic Accelerators. Requires a restart.")
+                    .defineInRange("password_hash_threads", Config.PASSWORD_HASH_THREADS, 1, 64);
+
+            MAX_CONCURRENT_PASSWORD_HASHES = builder
+                    .comment("The maximum number of passwords a computer can hash or verify at the same time.")
+                    .defineInRange("max_concurrent_password_hashes", Config.MAX_CONCURRENT_PASSWORD_HASHES, 1, 64);
+
+            CRYPTO_CPU_BUDGET = builder
+                    .comment("The CPU time in milliseconds a computer can spend on a Cryptographic Accelerator in a burst. Calls fail once it is spent, until it refills. 0 disables the budget.")
+                    .defineInRange("crypto_cpu_budget", Config.CRYPTO_CPU_BUDGET, 0, Integer.MAX_VALUE);
+
+            CRYPTO_CPU_BUDGET_REFILL = builder
+                    .comment("The CPU time in milliseconds given back to the budget of each computer every second.")
+                    .defineInRange("crypto_cpu_budget_refill", Config.CRYPTO_CPU_BUDGET_REFILL, 0, 1000);
+
+            MAX_COMPRESSION_LEVEL = builder
+                    .comment("The highest Deflate level (0 to 9) computers can compress with.")
+                    .defineInRange("max_compression_level", Config.MAX_COMPRESSION_LEVEL, 0, 9);
+
+            MAX_COMPRESSION_OUTPUT = builder
+                    .comment("The maximum number of bytes a single compression or decompression can produce. This protects the server against decompression bombs.")
+                    .defineInRange("max_compression_output", Config.MAX_COMPRESSION_OUTPUT, 1, Integer.MAX_VALUE);
+
+            MAX_PACK_SIZE = builder
+                    .comment("The maximum size in bytes of the data built by the Cryptographic Accelerator's pack method, and of a fixed size string in a format.")
+                    .defineInRange("max_pack_size", Config.MAX_PACK_SIZE, 1, Integer.MAX_VALUE);
+
+            CRYPTO_BENCHMARK_CASE_TIME = builder
+                    .comment("The time in milliseconds each case of the crypto benchmark runs for. A full benchmark runs about 60 cases.")
+                    .defineInRange("crypto_benchmark_case_time", Config.CRYPTO_BENCHMARK_CASE_TIME, 10, 1000);
+
             MAX_MAG_CARD_DATA = builder
                     .comment("The maximum size of data in a Mag Card.")
                     .defineInRange("max_mag_card_data", Config.MAX_MAG_CARD_DATA, 1, Integer.MAX_VALUE);
@@ -83,6 +252,21 @@ public class Config {
             FE_METER_INTERNAL_BUFFER_SIZE = builder
                     .comment("The size of FE Meters internal energy buffer.")
                     .defineInRange("fe_meter_internal_buffer_size", Config.FE_METER_INTERNAL_BUFFER_SIZE, 1, Integer.MAX_VALUE);
+            FE_METER_SYNC_INTERVAL = builder
+                    .comment("The minimum number of ticks between two updates of an FE Meter sent to the clients.")
+                    .defineInRange("fe_meter_sync_interval", Config.FE_METER_SYNC_INTERVAL, 1, 1200);
+            FE_METER_SYNC_ENERGY_THRESHOLD = builder
+                    .comment("The change in FE of the energy stored in an FE Meter below which clients aren't updated. 0 sends every change.")
+                    .defineInRange("fe_meter_sync_energy_threshold", Config.FE_METER_SYNC_ENERGY_THRESHOLD, 0, Integer.MAX_VALUE);
+            FE_METER_SYNC_TRANSFER_THRESHOLD = builder
+                    .comment("The change in FE/t of the energy transferred by an FE Meter below which clients aren't updated. 0 sends every change.")
+                    .defineInRange("fe_meter_sync_transfer_threshold", Config.FE_METER_SYNC_TRANSFER_THRESHOLD, 0, Integer.MAX_VALUE);
+            FE_METER_SYNC_MAX_INTERVAL = builder
+                    .comment("The maximum number of ticks clients can show an outdated FE Meter value. Past it, changes below the thresholds are sent too.")
+                    .defineInRange("fe_meter_sync_max_interval", Config.FE_METER_SYNC_MAX_INTERVAL, 1, 72000);
+            FE_METER_HISTORY_SIZE = builder
+                    .comment("The number of ticks of transfer history kept by each FE Meter. Each tick uses 4 bytes per meter.")
+                    .defineInRange("fe_meter_history_size", Config.FE_METER_HISTORY_SIZE, 1, 72000);
 
             serverSpecs = builder.build();
 